@@ -4,9 +4,14 @@ import com.formdev.flatlaf.FlatLightLaf;
 import com.knowledge.robot.ui.KnowledgeRobotApp;
 
 import javax.swing.*;
+import java.util.List;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
+        if (List.of(args).contains("--load")) {
+            KnowledgeRobotApp.runLoadTest();
+            return;
+        }
         FlatLightLaf.setup();
         SwingUtilities.invokeLater(() -> {
             KnowledgeRobotApp app = new KnowledgeRobotApp();
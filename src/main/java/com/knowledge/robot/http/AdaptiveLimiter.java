@@ -0,0 +1,227 @@
+package com.knowledge.robot.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制（AIMD + 延迟梯度），让在途请求数跟随后端实际承载能力变化：
+ * <ul>
+ *   <li>成功且短期延迟未明显高于基线：在途数接近上限时每个窗口加 1（加性增）；</li>
+ *   <li>短期延迟超过基线的 {@link #LATENCY_TOLERANCE} 倍：上限乘 0.9；</li>
+ *   <li>失败（异常、超时、5xx/429）：上限乘 0.7。</li>
+ * </ul>
+ * 乘性减每个窗口最多一次：只有在上次减小之后才发出的请求，其样本才能再次触发减小，
+ * 因此一批同时变慢或失败的响应只让上限缩小一次，而不是按条数连乘。
+ * 基线取观测到的最小延迟，并随样本缓慢上浮，以适应后端长期变慢。
+ * 拿不到额度的调用最多等待 {@code maxWait}，超时即拒绝并计数。
+ */
+public final class AdaptiveLimiter {
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final double ERROR_BACKOFF = 0.7;
+    private static final double SHORT_RTT_ALPHA = 0.2;
+    private static final int BASELINE_DRIFT = 200;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private double shortRttNanos;
+    private double baselineRttNanos;
+    private long rejected;
+    private long dropped;
+    private long lastDecreaseNanos;
+
+    public record Snapshot(String name, int limit, int inFlight, long latencyMillis, long baselineMillis,
+                           long rejected, long dropped) {
+    }
+
+    /**
+     * 调用访问其结果时标记 {@link #success()} / {@link #dropped()} / {@link #ignore()} / {@link #failed}，关闭时归还额度；
+     * 未标记即关闭视为失败，但关闭时线程已被中断（停止时取消）则不计入样本。
+     */
+    public final class Permit implements AutoCloseable {
+        private final long startNanos = System.nanoTime();
+        private boolean sampled;
+        private boolean closed;
+
+        /** 以从获取额度到现在的耗时作为延迟样本。 */
+        public void success() {
+            success(System.nanoTime() - startNanos);
+        }
+
+        /** 以调用方给出的延迟（如流式接口的首包时间）作为样本。 */
+        public void success(long latencyNanos) {
+            if (!sampled) {
+                sampled = true;
+                onSample(startNanos, latencyNanos, false);
+            }
+        }
+
+        public void dropped() {
+            if (!sampled) {
+                sampled = true;
+                onSample(startNanos, 0, true);
+            }
+        }
+
+        /** 不计入样本，例如客户端主动取消或 4xx 参数错误。 */
+        public void ignore() {
+            sampled = true;
+        }
+
+        /** 调用以异常结束：停止时的中断不计入样本，其余（含超时）记为失败。 */
+        public void failed(Throwable error) {
+            if (isInterrupt(error)) {
+                ignore();
+            } else {
+                dropped();
+            }
+        }
+
+        /** 按 HTTP 状态码记录结果：2xx 成功，5xx/429 失败，其余不计。 */
+        public void record(int httpCode) {
+            if (httpCode >= 200 && httpCode < 300) {
+                success();
+            } else if (httpCode >= 500 || httpCode == 429) {
+                dropped();
+            } else {
+                ignore();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (Thread.currentThread().isInterrupted()) {
+                ignore();
+            } else {
+                dropped();
+            }
+            release();
+        }
+    }
+
+    /** 上限超过等待时间仍无空闲额度时抛出。 */
+    public static final class RejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, long maxWait, TimeUnit unit) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Permit acquire() throws IOException, InterruptedException {
+        lock.lock();
+        try {
+            long remaining = maxWaitNanos;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejected++;
+                    throw new RejectedException(name + "并发受限：等待 "
+                            + TimeUnit.NANOSECONDS.toSeconds(maxWaitNanos) + " 秒仍无空闲额度（当前上限 " + (int) limit + "）");
+                }
+                remaining = available.awaitNanos(remaining);
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        return new Permit();
+    }
+
+    public Snapshot snapshot() {
+        lock.lock();
+        try {
+            return new Snapshot(name, (int) limit, inFlight,
+                    TimeUnit.NANOSECONDS.toMillis((long) shortRttNanos),
+                    TimeUnit.NANOSECONDS.toMillis((long) baselineRttNanos),
+                    rejected, dropped);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 超时属于真实失败；其余中断来自停止或取消。 */
+    private static boolean isInterrupt(Throwable error) {
+        return Thread.currentThread().isInterrupted()
+                || error instanceof InterruptedException
+                || (error instanceof InterruptedIOException && !(error instanceof SocketTimeoutException));
+    }
+
+    private void onSample(long startNanos, long rttNanos, boolean failed) {
+        lock.lock();
+        try {
+            int before = (int) limit;
+            // 上次减小之前发出的请求反映的是旧上限下的负载，不能再次触发减小
+            boolean canDecrease = startNanos - lastDecreaseNanos >= 0;
+            if (failed) {
+                dropped++;
+                if (canDecrease) {
+                    decrease(ERROR_BACKOFF);
+                }
+            } else {
+                shortRttNanos = shortRttNanos == 0 ? rttNanos
+                        : shortRttNanos + (rttNanos - shortRttNanos) * SHORT_RTT_ALPHA;
+                if (baselineRttNanos == 0 || rttNanos < baselineRttNanos) {
+                    baselineRttNanos = rttNanos;
+                } else {
+                    baselineRttNanos += (rttNanos - baselineRttNanos) / BASELINE_DRIFT;
+                }
+                if (shortRttNanos > baselineRttNanos * LATENCY_TOLERANCE) {
+                    if (canDecrease) {
+                        decrease(LATENCY_BACKOFF);
+                    }
+                } else if (inFlight * 2 >= limit) {
+                    // 只有真正用到额度时才放大，避免空闲时上限无限膨胀
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            if ((int) limit > before) {
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(double factor) {
+        limit = Math.max(minLimit, limit * factor);
+        lastDecreaseNanos = System.nanoTime();
+    }
+}
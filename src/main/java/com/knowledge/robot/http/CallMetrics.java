@@ -0,0 +1,146 @@
+package com.knowledge.robot.http;
+
+import com.knowledge.robot.util.LogLinearHistogram;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一类后端调用（点检上传、点检识别、对话）的耗时与流量统计，由 {@link HttpTransport} 的事件监听器按调用记录：
+ * 建连耗时（仅新建连接，含 TLS 握手）、首字节耗时（到响应头开始到达）、总耗时（到响应体读完或取消），
+ * 请求与响应字节数，以及按 {@link ErrorClass} 分类的错误数。
+ * <p>
+ * 耗时以微秒记入 {@link LogLinearHistogram}，计数使用 {@link LongAdder}，记录路径无锁、不分配内存。
+ * 请求以 {@code Request.Builder.tag(CallMetrics.class, metrics)} 标记所属类别，未标记的调用不统计。
+ */
+public final class CallMetrics {
+
+    public enum ErrorClass {
+        /** 连接、读写或整体调用超时 */
+        TIMEOUT,
+        /** 域名解析或建立 TCP 连接失败 */
+        CONNECT,
+        TLS,
+        HTTP_4XX,
+        /** 5xx 与 429 */
+        HTTP_5XX,
+        /** 其他 I/O 异常（连接被重置等） */
+        IO,
+        /** 客户端主动取消（如收到结束事件后提前关闭流），不计入错误数 */
+        CANCELED
+    }
+
+    private final String name;
+    private final LogLinearHistogram connectMicros = new LogLinearHistogram();
+    private final LogLinearHistogram ttfbMicros = new LogLinearHistogram();
+    private final LogLinearHistogram totalMicros = new LogLinearHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder[] errors = new LongAdder[ErrorClass.values().length];
+
+    CallMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = new LongAdder();
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    void connect(long nanos) {
+        connectMicros.record(nanos / 1000);
+    }
+
+    void firstByte(long nanos) {
+        ttfbMicros.record(nanos / 1000);
+    }
+
+    void finished(long nanos) {
+        calls.increment();
+        totalMicros.record(nanos / 1000);
+    }
+
+    void requestBytes(long bytes) {
+        requestBytes.add(bytes);
+    }
+
+    void responseBytes(long bytes) {
+        responseBytes.add(bytes);
+    }
+
+    /** 响应已到达但为 4xx/5xx；调用本身仍会以 {@link #finished} 结束。 */
+    void error(ErrorClass error) {
+        errors[error.ordinal()].increment();
+    }
+
+    /** 没有拿到完整响应的调用，不记入耗时分布。 */
+    void failed(ErrorClass error) {
+        calls.increment();
+        errors[error.ordinal()].increment();
+    }
+
+    static ErrorClass classify(IOException e, boolean canceled) {
+        if (canceled) {
+            return ErrorClass.CANCELED;
+        }
+        if (e instanceof UnknownHostException || e instanceof ConnectException || e instanceof NoRouteToHostException) {
+            return ErrorClass.CONNECT;
+        }
+        if (e instanceof SSLException) {
+            return ErrorClass.TLS;
+        }
+        // SocketTimeoutException 与调用超时（"timeout"）都是 InterruptedIOException
+        if (e instanceof InterruptedIOException) {
+            return ErrorClass.TIMEOUT;
+        }
+        return ErrorClass.IO;
+    }
+
+    public Snapshot snapshot() {
+        long[] errorCounts = new long[errors.length];
+        for (int i = 0; i < errors.length; i++) {
+            errorCounts[i] = errors[i].sum();
+        }
+        return new Snapshot(name, calls.sum(), requestBytes.sum(), responseBytes.sum(), errorCounts,
+                connectMicros.snapshot(), ttfbMicros.snapshot(), totalMicros.snapshot());
+    }
+
+    /** 某一时刻的累计统计；{@link #since} 得到两次快照之间的区间统计。耗时单位为微秒。 */
+    public record Snapshot(String name, long calls, long requestBytes, long responseBytes, long[] errorCounts,
+                           LogLinearHistogram.Snapshot connect, LogLinearHistogram.Snapshot ttfb,
+                           LogLinearHistogram.Snapshot total) {
+
+        public long errors(ErrorClass error) {
+            return errorCounts[error.ordinal()];
+        }
+
+        /** 除 {@link ErrorClass#CANCELED} 外的错误总数。 */
+        public long errors() {
+            long n = 0;
+            for (ErrorClass e : ErrorClass.values()) {
+                if (e != ErrorClass.CANCELED) {
+                    n += errors(e);
+                }
+            }
+            return n;
+        }
+
+        public Snapshot since(Snapshot earlier) {
+            long[] diff = new long[errorCounts.length];
+            for (int i = 0; i < diff.length; i++) {
+                diff[i] = errorCounts[i] - earlier.errorCounts[i];
+            }
+            return new Snapshot(name, calls - earlier.calls, requestBytes - earlier.requestBytes,
+                    responseBytes - earlier.responseBytes, diff, connect.since(earlier.connect),
+                    ttfb.since(earlier.ttfb), total.since(earlier.total));
+        }
+    }
+}
@@ -1,105 +1,126 @@
 package com.knowledge.robot.http;
 
 import okhttp3.*;
-import okio.BufferedSource;
 
-import javax.net.ssl.*;
 import java.io.IOException;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
 
 /**
- * 简单 HTTP 客户端（OkHttp），支持：
+ * 简单 HTTP 客户端（OkHttp，底层共用 {@link HttpTransport}），支持：
  *  - 忽略 SSL 证书校验
  *  - 常规 POST JSON
- *  - 流式读取（逐行回调）
+ *  - 流式读取（{@link SseDecoder} 解码的事件）
+ *  - 异步调用：{@link #postJsonAsync} 返回整段响应的 {@link CompletableFuture}，
+ *    {@link #stream} / {@link #streamChat} 返回按需拉取的 SSE 事件或对话增量 {@link Flow.Publisher}；等待额度与读取响应都在虚拟线程上，
+ *    取消 future 或订阅会直接取消底层调用
  */
 public class ChatClient {
 
+    /** 对话接口的自适应并发限制器名称 */
+    public static final String LIMITER = "对话";
+
+    /** 异步调用的执行器：每个在途对话一个虚拟线程，阻塞读取不占用平台线程 */
+    private static final ExecutorService ASYNC =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-async-", 0).factory());
+
     private final OkHttpClient client;
+    private final AdaptiveLimiter limiter;
+    private final CallMetrics metrics;
     private final String url;
     private final String token;
 
     public ChatClient(String url, String token) {
         this.url = url;
         this.token = token;
-        this.client = buildUnsafeClient();
+        this.client = HttpTransport.shared().client();
+        this.limiter = HttpTransport.shared().limiter(LIMITER);
+        this.metrics = HttpTransport.shared().metrics(LIMITER);
     }
 
-    /** 忽略 SSL / Hostname 校验 */
-    private OkHttpClient buildUnsafeClient() {
-        try {
-            TrustManager[] trustAllCerts = new TrustManager[]{
-                    new X509TrustManager() {
-                        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {}
-                        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {}
-                        public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[]{}; }
-                    }
-            };
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(null, trustAllCerts, new java.security.SecureRandom());
-            SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
-
-            OkHttpClient.Builder builder = new OkHttpClient.Builder()
-                    .sslSocketFactory(sslSocketFactory, (X509TrustManager) trustAllCerts[0])
-                    .hostnameVerifier((hostname, session) -> true);
-
-            // 可按需设置超时
-            builder.callTimeout(java.time.Duration.ofSeconds(180));
-            builder.readTimeout(java.time.Duration.ofSeconds(180));
-            builder.connectTimeout(java.time.Duration.ofSeconds(30));
-            builder.writeTimeout(java.time.Duration.ofSeconds(60));
-
-            return builder.build();
-        } catch (NoSuchAlgorithmException | KeyManagementException e) {
-            throw new RuntimeException(e);
+    /** 常规 POST JSON（非流）；并发额度在拿到响应头后即归还 */
+    public Response postJson(String json) throws IOException {
+        try (AdaptiveLimiter.Permit permit = acquire()) {
+            Response resp = client.newCall(request(json)).execute();
+            permit.record(resp.code());
+            return resp;
         }
     }
 
-    /** 常规 POST JSON（非流） */
-    public Response postJson(String json) throws IOException {
-        RequestBody body = RequestBody.create(json, MediaType.parse("application/json; charset=utf-8"));
-        Request request = new Request.Builder()
-                .url(url)
-                .addHeader("Authorization", token)
-                .addHeader("Content-Type", "application/json")
-                .post(body)
-                .build();
-        return client.newCall(request).execute();
+    /**
+     * 异步 POST JSON，完成值为完整响应体；非 2xx 以 {@link IOException} 异常完成。
+     * 响应在内部读取并关闭，调用方无需管理 {@link Response}。对返回的 future 调用 {@code cancel} 会取消底层调用。
+     */
+    public CompletableFuture<String> postJsonAsync(String json) {
+        Call call = client.newCall(request(json));
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.whenComplete((body, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        ASYNC.execute(() -> {
+            try (AdaptiveLimiter.Permit permit = acquire()) {
+                if (future.isDone()) {
+                    permit.ignore();
+                    return;
+                }
+                try (Response resp = call.execute()) {
+                    permit.record(resp.code());
+                    String body = resp.body() != null ? resp.body().string() : "";
+                    if (resp.isSuccessful()) {
+                        future.complete(body);
+                    } else {
+                        future.completeExceptionally(new IOException("HTTP " + resp.code() + " " + body));
+                    }
+                } catch (IOException e) {
+                    if (call.isCanceled()) {
+                        permit.ignore();
+                    }
+                    future.completeExceptionally(e);
+                }
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
     }
 
     /**
-     * 流式 POST：逐行把响应内容回调出去（常见为 "event:" / "data:" 逐行）
-     * 注意：此方法内部会消费完响应并自动关闭。
+     * 流式 POST 的 SSE 事件发布者。每次 {@code subscribe} 发起一次新调用，只在订阅者 {@code request(n)} 后才继续读取，
+     * 响应结束时 {@code onComplete}，非 2xx 或连接异常时 {@code onError}；{@code cancel()} 取消底层调用。
      */
-    public void postJsonStream(String json, java.util.function.Consumer<String> onLine) throws Exception {
+    public Flow.Publisher<SseEvent> stream(String json) {
+        return new SsePublisher<>(() -> client.newCall(request(json)), () -> SseDecoder::toEvent, limiter, ASYNC);
+    }
+
+    /**
+     * 与 {@link #stream} 相同的调用与背压语义，但每条事件的 data 字节在读取线程上直接交给 {@link ChatDeltaParser}，
+     * 发布解析后的 {@link ChatDelta}，不为 data 创建字符串、也不再二次解析；没有 data 的事件不发布。
+     */
+    public Flow.Publisher<ChatDelta> streamChat(String json) {
+        return new SsePublisher<>(() -> client.newCall(request(json)), ChatDeltaParser::mapper, limiter, ASYNC);
+    }
+
+    private Request request(String json) {
         RequestBody body = RequestBody.create(json, MediaType.parse("application/json; charset=utf-8"));
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(url)
                 .addHeader("Authorization", token)
                 .addHeader("Content-Type", "application/json")
+                .tag(CallMetrics.class, metrics)
                 .post(body)
                 .build();
+    }
 
-        Call call = client.newCall(request);
-        Response resp = call.execute();
-        try (resp) {
-            if (!resp.isSuccessful()) {
-                onLine.accept("HTTP " + resp.code());
-                if (resp.body() != null) {
-                    onLine.accept(resp.body().string());
-                }
-                return;
-            }
-            if (resp.body() == null) return;
-            BufferedSource source = resp.body().source();
-            while (!source.exhausted()) {
-                String line = source.readUtf8LineStrict();
-                // 逐行回调
-                onLine.accept(line);
-            }
+    private AdaptiveLimiter.Permit acquire() throws IOException {
+        try {
+            return limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException("等待并发额度时被中断");
         }
     }
 }
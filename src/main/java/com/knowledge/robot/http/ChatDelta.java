@@ -0,0 +1,13 @@
+package com.knowledge.robot.http;
+
+/**
+ * 流式对话中一条事件解析后的结果，由 {@link ChatClient#streamChat} 在读取线程上直接从 data 字节解析得到。
+ *
+ * @param text         本条事件追加的回答文本，没有时为空串
+ * @param finishReason 非空的 {@code finish_reason}，未结束时为 null
+ * @param error        顶层 {@code error}，没有时为 null
+ * @param done         data 是否为结束标记 {@code [DONE]}
+ * @param dataBytes    本条事件 data 的字节数（UTF-8）
+ */
+public record ChatDelta(String text, String finishReason, String error, boolean done, long dataBytes) {
+}
@@ -0,0 +1,149 @@
+package com.knowledge.robot.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okio.Buffer;
+
+import java.io.IOException;
+
+/**
+ * 从 OpenAI 兼容的流式 data 中取出增量文本，用 Jackson 流式解析器直接读字节，不构建 JSON 树：
+ * {@code choices[0].delta.content}（或 {@code choices[0].message.content}）追加到 {@link #content()}，
+ * 同时记录 {@code choices[0].finish_reason} 与顶层 {@code error}。其余字段跳过。
+ * <p>
+ * 一个实例对应一次流式响应，非线程安全。
+ */
+public final class ChatDeltaParser {
+    /** 带 ObjectMapper 编解码器的工厂，error 为对象时可读成树 */
+    private static final JsonFactory FACTORY = new ObjectMapper().getFactory();
+
+    private final StringBuilder content = new StringBuilder();
+    private byte[] scratch = new byte[1024];
+    private String finishReason;
+    private String error;
+
+    /**
+     * 解析并消费一条 data。字节先拷入复用的数组，再交给字节数组解析器，避免每条事件新建输入流与缓冲。
+     * @return false 表示不是 JSON 对象（原样忽略）
+     */
+    public boolean accept(Buffer data) {
+        long size = data.size();
+        if (size > scratch.length) {
+            scratch = new byte[(int) Math.max(size, scratch.length * 2L)];
+        }
+        int length = 0;
+        int n;
+        while (length < size && (n = data.read(scratch, length, (int) size - length)) > 0) {
+            length += n;
+        }
+        return parse(length);
+    }
+
+    /** 解析已解码为字符串的 data（如 {@link SseEvent#data()}）。 */
+    public boolean accept(String data) {
+        try (JsonParser p = FACTORY.createParser(data)) {
+            return parse(p);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean parse(int length) {
+        try (JsonParser p = FACTORY.createParser(scratch, 0, length)) {
+            return parse(p);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean parse(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("choices".equals(name) && value == JsonToken.START_ARRAY) {
+                choices(p);
+            } else if ("error".equals(name) && value != JsonToken.VALUE_NULL) {
+                error = value.isScalarValue() ? p.getText() : p.readValueAsTree().toString();
+            } else {
+                p.skipChildren();
+            }
+        }
+        return true;
+    }
+
+    private void choices(JsonParser p) throws IOException {
+        boolean first = true;
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+            if (first && t == JsonToken.START_OBJECT) {
+                choice(p);
+            } else {
+                p.skipChildren();
+            }
+            first = false;
+        }
+    }
+
+    private void choice(JsonParser p) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if (("delta".equals(name) || "message".equals(name)) && value == JsonToken.START_OBJECT) {
+                message(p);
+            } else if ("finish_reason".equals(name) && value == JsonToken.VALUE_STRING) {
+                finishReason = p.getText();
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private void message(JsonParser p) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("content".equals(name) && value == JsonToken.VALUE_STRING) {
+                content.append(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    /** 供 {@link ChatClient#streamChat} 使用：每个订阅一个解析器，逐条解析 data 字节并给出本条的增量。 */
+    static SsePublisher.Mapper<ChatDelta> mapper() {
+        ChatDeltaParser parser = new ChatDeltaParser();
+        return decoder -> {
+            if (!decoder.hasData()) {
+                return null;
+            }
+            long bytes = decoder.data().size();
+            if (decoder.isDoneMarker()) {
+                decoder.data().clear();
+                return new ChatDelta("", parser.finishReason(), parser.error(), true, bytes);
+            }
+            parser.content.setLength(0);
+            parser.accept(decoder.data());
+            String text = parser.content.isEmpty() ? "" : parser.content.toString();
+            return new ChatDelta(text, parser.finishReason(), parser.error(), false, bytes);
+        };
+    }
+
+    public StringBuilder content() {
+        return content;
+    }
+
+    /** 最近一次非空的 finish_reason，未结束时为 null。 */
+    public String finishReason() {
+        return finishReason == null || finishReason.isEmpty() || finishReason.equals("null") ? null : finishReason;
+    }
+
+    public String error() {
+        return error;
+    }
+}
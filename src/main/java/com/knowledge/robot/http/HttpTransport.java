@@ -0,0 +1,340 @@
+package com.knowledge.robot.http;
+
+import com.knowledge.robot.util.AppSettings;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内共享的 HTTP 传输层：ChatClient 与智能点检共用同一个 {@link OkHttpClient}，
+ * 因而共用连接池与并发上限，重启点检任务不会丢弃已经握手完成的 TLS 连接。
+ * <ul>
+ *   <li>连接池：最大空闲连接数与 keep-alive 时长；</li>
+ *   <li>并发上限：所有调用（包括同步 {@code execute()}）的总在途数与单主机在途数，由拦截器在发出请求前排队，
+ *       额度一直占用到响应体关闭，流式响应读取期间同样计入；</li>
+ *   <li>统计：连接总数/空闲/活动、新建连接数与复用率、执行中与排队的调用数；</li>
+ *   <li>按用途命名的 {@link AdaptiveLimiter}，限制各类后端调用的在途数量；</li>
+ *   <li>按用途命名的 {@link CallMetrics}，记录各类后端调用的耗时分布、流量与错误分类，
+ *       并可按 {@code metrics.csv*} 配置定期导出为 CSV。</li>
+ * </ul>
+ * 参数来自 {@code app.properties} 的 {@code http.*} 配置项。
+ */
+public final class HttpTransport {
+
+    private static final HttpTransport SHARED = new HttpTransport(AppSettings.get());
+
+    private final ConnectionPool connectionPool;
+    private final OkHttpClient client;
+    private final int maxRequestsPerHost;
+    private final Semaphore requestPermits;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedCalls = new AtomicInteger();
+    private final AtomicInteger runningCalls = new AtomicInteger();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsAcquired = new LongAdder();
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<String, CallMetrics> metrics = new ConcurrentHashMap<>();
+    private final AppSettings settings;
+
+    public record PoolStats(int totalConnections,
+                            int idleConnections,
+                            long connectionsOpened,
+                            long connectionsAcquired,
+                            int runningCalls,
+                            int queuedCalls) {
+
+        public int activeConnections() {
+            return totalConnections - idleConnections;
+        }
+
+        /** 连接获取中复用已有连接的比例（0~1）。 */
+        public double reuseRatio() {
+            if (connectionsAcquired == 0) {
+                return 0;
+            }
+            return Math.max(0, 1.0 - (double) connectionsOpened / connectionsAcquired);
+        }
+    }
+
+    private HttpTransport(AppSettings settings) {
+        this.settings = settings;
+        this.connectionPool = new ConnectionPool(
+                settings.httpMaxIdleConnections(), settings.httpKeepAliveSeconds(), TimeUnit.SECONDS);
+        int maxRequests = Math.max(1, settings.httpMaxRequests());
+        this.maxRequestsPerHost = Math.max(1, settings.httpMaxRequestsPerHost());
+        this.requestPermits = new Semaphore(maxRequests, true);
+        this.client = new OkHttpClient.Builder()
+                .sslSocketFactory(TrustAllSslContext.socketFactory(), TrustAllSslContext.trustManager())
+                .hostnameVerifier((hostname, session) -> true)
+                .connectionPool(connectionPool)
+                .addInterceptor(this::bounded)
+                .eventListenerFactory(CallListener::new)
+                .callTimeout(Duration.ofSeconds(180))
+                .readTimeout(Duration.ofSeconds(180))
+                .connectTimeout(Duration.ofSeconds(30))
+                .writeTimeout(Duration.ofSeconds(60))
+                .build();
+        MetricsCsvExporter.startIfEnabled(this, settings);
+    }
+
+    public static HttpTransport shared() {
+        return SHARED;
+    }
+
+    public OkHttpClient client() {
+        return client;
+    }
+
+    /** 按名称取（必要时创建）自适应并发限制器，同名调用共享同一额度。 */
+    public AdaptiveLimiter limiter(String name) {
+        return limiters.computeIfAbsent(name, n -> new AdaptiveLimiter(n,
+                settings.httpLimiterInitialLimit(),
+                settings.httpLimiterMinLimit(),
+                settings.httpLimiterMaxLimit(),
+                settings.httpLimiterMaxWaitSeconds(), TimeUnit.SECONDS));
+    }
+
+    public List<AdaptiveLimiter.Snapshot> limiterSnapshots() {
+        return limiters.values().stream()
+                .map(AdaptiveLimiter::snapshot)
+                .sorted(Comparator.comparing(AdaptiveLimiter.Snapshot::name))
+                .toList();
+    }
+
+    /** 按名称取（必要时创建）调用统计；名称与同类调用的限流器一致。 */
+    public CallMetrics metrics(String name) {
+        return metrics.computeIfAbsent(name, CallMetrics::new);
+    }
+
+    public List<CallMetrics.Snapshot> metricsSnapshots() {
+        return metrics.values().stream()
+                .map(CallMetrics::snapshot)
+                .sorted(Comparator.comparing(CallMetrics.Snapshot::name))
+                .toList();
+    }
+
+    public PoolStats stats() {
+        return new PoolStats(
+                connectionPool.connectionCount(),
+                connectionPool.idleConnectionCount(),
+                connectionsOpened.sum(),
+                connectionsAcquired.sum(),
+                runningCalls.get(),
+                queuedCalls.get());
+    }
+
+    /**
+     * 先取目标主机的额度再取总额度（等待某台主机的调用不占用总额度），取不到时排队（计入 {@link PoolStats#queuedCalls()}），
+     * 调用被取消时放弃等待；额度在响应体关闭或请求失败时归还。
+     */
+    private Response bounded(Interceptor.Chain chain) throws IOException {
+        Semaphore host = hostPermits.computeIfAbsent(chain.request().url().host(),
+                h -> new Semaphore(maxRequestsPerHost, true));
+        queuedCalls.incrementAndGet();
+        try {
+            await(host, chain.call());
+            try {
+                await(requestPermits, chain.call());
+            } catch (IOException e) {
+                host.release();
+                throw e;
+            }
+        } finally {
+            queuedCalls.decrementAndGet();
+        }
+        runningCalls.incrementAndGet();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                runningCalls.decrementAndGet();
+                requestPermits.release();
+                host.release();
+            }
+        };
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            release.run();
+            return response;
+        }
+        return response.newBuilder().body(new ReleasingBody(body, release)).build();
+    }
+
+    private static void await(Semaphore permits, Call call) throws IOException {
+        try {
+            while (!permits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (call.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待连接额度时被中断");
+        }
+    }
+
+    /** 关闭（或读完后关闭）时归还并发额度的响应体。 */
+    private static final class ReleasingBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        ReleasingBody(ResponseBody delegate, Runnable release) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release.run();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+
+    /** 每个调用一个实例：统计连接复用，并为带 {@link CallMetrics} 标记的调用记录耗时、字节数与错误分类。 */
+    private final class CallListener extends EventListener {
+        private final CallMetrics target;
+        private long startNanos;
+        private long connectStartNanos;
+
+        CallListener(Call call) {
+            this.target = call.request().tag(CallMetrics.class);
+        }
+
+        @Override
+        public void callStart(Call call) {
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectionsOpened.increment();
+            connectStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            if (target != null) {
+                target.connect(System.nanoTime() - connectStartNanos);
+            }
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionsAcquired.increment();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            if (target != null) {
+                target.requestBytes(request.headers().byteCount());
+            }
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            if (target != null) {
+                target.requestBytes(byteCount);
+            }
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            if (target != null) {
+                target.firstByte(System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            if (target == null) {
+                return;
+            }
+            target.responseBytes(response.headers().byteCount());
+            int code = response.code();
+            if (code >= 500 || code == 429) {
+                target.error(CallMetrics.ErrorClass.HTTP_5XX);
+            } else if (code >= 400) {
+                target.error(CallMetrics.ErrorClass.HTTP_4XX);
+            }
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            if (target != null) {
+                target.responseBytes(byteCount);
+            }
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            if (target != null) {
+                target.finished(System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            if (target == null) {
+                return;
+            }
+            CallMetrics.ErrorClass error = CallMetrics.classify(ioe, call.isCanceled());
+            if (error == CallMetrics.ErrorClass.CANCELED) {
+                // 提前关闭的流同样是一次完整的调用，耗时到取消为止
+                target.error(error);
+                target.finished(System.nanoTime() - startNanos);
+            } else {
+                target.failed(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.knowledge.robot.http;
+
+import com.knowledge.robot.util.AppSettings;
+import com.knowledge.robot.util.LogLinearHistogram;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每 {@code metrics.csvIntervalSeconds} 秒把各类调用在本区间内的统计追加到 {@code metrics.csvFile}：
+ * 调用数、各类错误数、字节数，以及建连、首字节、总耗时的 p50/p95/p99（毫秒）。区间内没有调用的类别不输出。
+ * 默认关闭（间隔为 0）。
+ */
+final class MetricsCsvExporter implements Runnable {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String HEADER = "time,call,calls,errors,timeout,connect_failed,tls,http_4xx,http_5xx,io,canceled,"
+            + "request_bytes,response_bytes,connect_p50_ms,connect_p95_ms,connect_p99_ms,"
+            + "ttfb_p50_ms,ttfb_p95_ms,ttfb_p99_ms,total_p50_ms,total_p95_ms,total_p99_ms,total_max_ms";
+
+    private final HttpTransport transport;
+    private final Path file;
+    /** 只在导出线程上读写 */
+    private final Map<String, CallMetrics.Snapshot> previous = new HashMap<>();
+
+    private MetricsCsvExporter(HttpTransport transport, Path file) {
+        this.transport = transport;
+        this.file = file;
+    }
+
+    static void startIfEnabled(HttpTransport transport, AppSettings settings) {
+        long interval = settings.metricsCsvIntervalSeconds();
+        if (interval <= 0) {
+            return;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-csv");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(new MetricsCsvExporter(transport, settings.metricsCsvFile()),
+                interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void run() {
+        String time = TIME_FORMAT.format(LocalDateTime.now());
+        StringBuilder rows = new StringBuilder();
+        for (CallMetrics.Snapshot current : transport.metricsSnapshots()) {
+            CallMetrics.Snapshot before = previous.put(current.name(), current);
+            CallMetrics.Snapshot s = before == null ? current : current.since(before);
+            if (s.calls() == 0) {
+                continue;
+            }
+            rows.append(time).append(',').append(s.name()).append(',').append(s.calls()).append(',').append(s.errors());
+            for (CallMetrics.ErrorClass e : CallMetrics.ErrorClass.values()) {
+                rows.append(',').append(s.errors(e));
+            }
+            rows.append(',').append(s.requestBytes()).append(',').append(s.responseBytes());
+            percentiles(rows, s.connect());
+            percentiles(rows, s.ttfb());
+            percentiles(rows, s.total());
+            rows.append(',').append(millis(s.total().max())).append('\n');
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+            try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (fresh) {
+                    w.write(HEADER);
+                    w.write('\n');
+                }
+                w.write(rows.toString());
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // 导出失败不影响调用，下个区间再试
+        }
+    }
+
+    /** 区间内没有样本（如全部复用连接时的建连耗时）输出空值。 */
+    private static void percentiles(StringBuilder out, LogLinearHistogram.Snapshot h) {
+        if (h.count() == 0) {
+            out.append(",,,");
+            return;
+        }
+        out.append(',').append(millis(h.valueAt(0.50)))
+                .append(',').append(millis(h.valueAt(0.95)))
+                .append(',').append(millis(h.valueAt(0.99)));
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+    }
+}
@@ -0,0 +1,158 @@
+package com.knowledge.robot.http;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.IOException;
+
+/**
+ * Server-Sent Events 解码器，直接在 okio 缓冲区上按字节查找行边界，不为每行创建字符串：
+ * <ul>
+ *   <li>{@code data:} 的值以段为单位移动到 {@link #data()}，多行 data 以 '\n' 连接；</li>
+ *   <li>{@code event:} / {@code id:} 只在出现时解码，与上一条相同的事件名复用同一字符串；</li>
+ *   <li>以 ':' 开头的注释行、{@code retry:} 与未知字段跳过；行尾可为 LF 或 CRLF。</li>
+ * </ul>
+ * 与规范的两处差异，沿用现有接口的习惯：只有 {@code event:} 没有 data 的事件（如 {@code event: done}）同样派发；
+ * 连接关闭时未以空行结束的最后一条事件也会派发。
+ * <p>
+ * 非线程安全；{@link #data()} 只在下一次 {@link #next()} 之前有效。
+ */
+public final class SseDecoder {
+    private static final ByteString DATA = ByteString.encodeUtf8("data");
+    private static final ByteString EVENT = ByteString.encodeUtf8("event");
+    private static final ByteString ID = ByteString.encodeUtf8("id");
+    private static final ByteString DONE = ByteString.encodeUtf8("[DONE]");
+
+    private final BufferedSource source;
+    private final Buffer data = new Buffer();
+    private boolean hasData;
+    private String event;
+    private String id;
+    private ByteString lastEventBytes;
+    private String lastEvent;
+    private long bytesRead;
+
+    public SseDecoder(BufferedSource source) {
+        this.source = source;
+    }
+
+    /**
+     * 读取到下一条事件为止。
+     * @return false 表示连接已结束且没有待派发的事件
+     */
+    public boolean next() throws IOException {
+        data.clear();
+        hasData = false;
+        event = null;
+        while (true) {
+            long lineEnd = source.indexOf((byte) '\n');
+            long consumed;
+            if (lineEnd < 0) {
+                // indexOf 找不到时已读到流结束：剩余字节是没有换行符的最后一行
+                lineEnd = source.getBuffer().size();
+                if (lineEnd == 0) {
+                    return hasData || event != null;
+                }
+                consumed = lineEnd;
+            } else {
+                consumed = lineEnd + 1;
+            }
+            long length = lineEnd > 0 && source.getBuffer().getByte(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            bytesRead += consumed;
+            if (length == 0) {
+                source.skip(consumed);
+                if (hasData || event != null) {
+                    return true;
+                }
+                continue;
+            }
+            field(length);
+            source.skip(consumed - length);
+        }
+    }
+
+    /** 处理缓冲区开头长为 {@code length} 的一行并消费其内容（不含行尾）。 */
+    private void field(long length) throws IOException {
+        Buffer buf = source.getBuffer();
+        if (buf.getByte(0) == ':') {
+            source.skip(length);
+            return;
+        }
+        long colon = buf.indexOf((byte) ':', 0, length);
+        long nameLength = colon < 0 ? length : colon;
+        long valueStart = colon < 0 ? length : colon + 1;
+        if (valueStart < length && buf.getByte(valueStart) == ' ') {
+            valueStart++;
+        }
+        long valueLength = length - valueStart;
+        if (isField(buf, nameLength, DATA)) {
+            source.skip(valueStart);
+            if (hasData) {
+                data.writeByte('\n');
+            }
+            buf.read(data, valueLength);
+            hasData = true;
+        } else if (isField(buf, nameLength, EVENT)) {
+            source.skip(valueStart);
+            event = eventName(valueLength);
+        } else if (isField(buf, nameLength, ID)) {
+            source.skip(valueStart);
+            id = source.readUtf8(valueLength);
+        } else {
+            source.skip(length);
+        }
+    }
+
+    private static boolean isField(Buffer buf, long nameLength, ByteString name) {
+        return nameLength == name.size() && buf.rangeEquals(0, name);
+    }
+
+    private String eventName(long length) throws IOException {
+        if (lastEventBytes != null && lastEventBytes.size() == length
+                && source.getBuffer().rangeEquals(0, lastEventBytes)) {
+            source.skip(length);
+            return lastEvent;
+        }
+        lastEventBytes = source.readByteString(length);
+        lastEvent = lastEventBytes.utf8();
+        return lastEvent;
+    }
+
+    /** 当前事件名，未指定时为 {@link SseEvent#DEFAULT_EVENT}。 */
+    public String event() {
+        return event != null ? event : SseEvent.DEFAULT_EVENT;
+    }
+
+    /** 最近一次出现的 {@code id:}，按规范跨事件保留。 */
+    public String id() {
+        return id;
+    }
+
+    public boolean hasData() {
+        return hasData;
+    }
+
+    /** 当前事件的 data 字节，调用方可直接读取（消费）。 */
+    public Buffer data() {
+        return data;
+    }
+
+    public String dataUtf8() {
+        return data.snapshot().utf8();
+    }
+
+    /** data 是否为 OpenAI 风格的结束标记 {@code [DONE]}。 */
+    public boolean isDoneMarker() {
+        return data.size() == DONE.size() && data.rangeEquals(0, DONE);
+    }
+
+    /** 已消费的响应字节数（含换行符与注释行）。 */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public SseEvent toEvent() {
+        return new SseEvent(event(), hasData ? dataUtf8() : "", id);
+    }
+}
@@ -0,0 +1,12 @@
+package com.knowledge.robot.http;
+
+/**
+ * 一条 Server-Sent Events 事件：空行之前累积的字段。
+ *
+ * @param event 事件名（{@code event:} 字段），未指定时为 {@code "message"}
+ * @param data  {@code data:} 字段，多行时以 '\n' 连接
+ * @param id    {@code id:} 字段，未出现时为 null
+ */
+public record SseEvent(String event, String data, String id) {
+    public static final String DEFAULT_EVENT = "message";
+}
@@ -0,0 +1,174 @@
+package com.knowledge.robot.http;
+
+import okhttp3.Call;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 流式对话响应的 {@link Flow.Publisher}：每次订阅发起一次新调用（冷发布者）。
+ * 每条事件由该订阅自己的 {@link Mapper} 在读取线程上直接从 {@link SseDecoder} 转换为发布的元素，
+ * 例如 {@link SseEvent}，或不经字符串、直接解析 data 字节得到的 {@link ChatDelta}。
+ * <p>
+ * 读取在虚拟线程上进行，且只在订阅者有未满足的需求时才从连接读取下一条事件；
+ * 需求为 0 时读取线程挂起，服务端随 TCP 窗口被反压。{@link Flow.Subscription#cancel()}
+ * 直接取消底层 {@link Call}，阻塞中的读取立即失败退出，不再回调订阅者。
+ */
+final class SsePublisher<T> implements Flow.Publisher<T> {
+    /** 把解码器当前的事件转换为要发布的元素；返回 null 时跳过该事件，不消耗需求。 */
+    interface Mapper<T> {
+        T map(SseDecoder decoder) throws IOException;
+    }
+
+    private final Supplier<Call> calls;
+    private final Supplier<? extends Mapper<T>> mappers;
+    private final AdaptiveLimiter limiter;
+    private final Executor executor;
+
+    SsePublisher(Supplier<Call> calls, Supplier<? extends Mapper<T>> mappers, AdaptiveLimiter limiter,
+                 Executor executor) {
+        this.calls = calls;
+        this.mappers = mappers;
+        this.limiter = limiter;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Subscription s = new Subscription(subscriber, calls.get(), mappers.get());
+        subscriber.onSubscribe(s);
+        executor.execute(s::run);
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Call call;
+        private final Mapper<T> mapper;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition demanded = lock.newCondition();
+        private final AtomicBoolean done = new AtomicBoolean();
+        private long demand;
+        private Throwable invalidRequest;
+
+        Subscription(Flow.Subscriber<? super T> subscriber, Call call, Mapper<T> mapper) {
+            this.subscriber = subscriber;
+            this.call = call;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void request(long n) {
+            lock.lock();
+            try {
+                if (n <= 0) {
+                    // 规范 §3.9：非正数请求以 onError 结束
+                    invalidRequest = new IllegalArgumentException("request(n) 需为正数：" + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                demanded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                call.cancel();
+                wake();
+            }
+        }
+
+        void run() {
+            if (done.get()) {
+                return;
+            }
+            AdaptiveLimiter.Permit permit;
+            try {
+                permit = limiter.acquire();
+            } catch (InterruptedException | IOException e) {
+                fail(e);
+                return;
+            }
+            try (permit) {
+                try (Response resp = call.execute()) {
+                    permit.record(resp.code());
+                    if (!resp.isSuccessful() || resp.body() == null) {
+                        fail(new IOException("HTTP " + resp.code()));
+                        return;
+                    }
+                    read(resp.body().source());
+                    if (done.compareAndSet(false, true)) {
+                        subscriber.onComplete();
+                    }
+                } catch (IOException | InterruptedException | RuntimeException e) {
+                    if (done.get()) {
+                        // 订阅者取消，不计入限流样本
+                        permit.ignore();
+                    } else {
+                        fail(e);
+                    }
+                }
+            }
+        }
+
+        /** 每解码出一条事件，先等待需求再派发。 */
+        private void read(BufferedSource source) throws IOException, InterruptedException {
+            SseDecoder decoder = new SseDecoder(source);
+            while (!done.get() && decoder.next()) {
+                T item = mapper.map(decoder);
+                if (item == null) {
+                    continue;
+                }
+                awaitDemand();
+                if (done.get()) {
+                    return;
+                }
+                subscriber.onNext(item);
+            }
+        }
+
+        private void awaitDemand() throws InterruptedException {
+            lock.lock();
+            try {
+                while (demand == 0 && invalidRequest == null && !done.get()) {
+                    demanded.await();
+                }
+                if (invalidRequest != null) {
+                    call.cancel();
+                    throw new IllegalStateException(invalidRequest);
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void wake() {
+            lock.lock();
+            try {
+                demanded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void fail(Throwable t) {
+            if (done.compareAndSet(false, true)) {
+                Throwable cause = t instanceof IllegalStateException && t.getCause() instanceof IllegalArgumentException
+                        ? t.getCause() : t;
+                subscriber.onError(cause);
+            }
+        }
+    }
+}
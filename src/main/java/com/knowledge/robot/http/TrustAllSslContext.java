@@ -1,4 +1,4 @@
-package com.knowledge.robot.inspection;
+package com.knowledge.robot.http;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
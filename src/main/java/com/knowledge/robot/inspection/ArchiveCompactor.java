@@ -0,0 +1,325 @@
+package com.knowledge.robot.inspection;
+
+import com.knowledge.robot.inspection.InspectionEvent.Severity;
+import com.knowledge.robot.inspection.InspectionEvent.Stage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 归档保留任务，在低优先级后台线程上周期执行：
+ * <ul>
+ *   <li>归档日期早于 {@code compactAfterDays} 天的分区打包为压缩段 {@code his/yyyy/MM/dd.zip}，
+ *       历史索引改写为段内路径后删除原图，历史面板仍可显示缩略图、双击时解压打开；</li>
+ *   <li>早于 {@code retentionDays} 天的分区（目录或压缩段）直接删除，并从历史索引中移除，
+ *       同时清理同样过期的缩略图缓存。</li>
+ * </ul>
+ * 读写按 {@code maxBytesPerSecond} 限速；点检流水线中有照片在处理时暂停，不与实时上传争抢磁盘和 CPU，
+ * 但一次整理累计让路超过 {@link #MAX_DEFER_MILLIS} 后不再整段等待，只在每张照片之间短暂让出，
+ * 避免持续有照片进来时整理永远无法推进。JPEG 本身已压缩，以 STORED 方式入段，不再浪费 CPU 做 deflate。
+ * 天数为 0 表示不启用对应步骤。
+ */
+final class ArchiveCompactor implements Runnable {
+    private static final int CHUNK = 64 * 1024;
+    private static final long BUSY_WAIT_MILLIS = 1000;
+    /** 一次整理中等待流水线空闲的累计上限，超过后每张照片之间只让出 {@link #BUSY_YIELD_MILLIS} */
+    private static final long MAX_DEFER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long BUSY_YIELD_MILLIS = 200;
+    /** 历史面板的缩略图缓存目录，见界面包中的 ThumbnailCache */
+    private static final String THUMB_DIR = ".thumbs";
+
+    private final Path historyDir;
+    private final int compactAfterDays;
+    private final int retentionDays;
+    private final long maxBytesPerSecond;
+    private final BooleanSupplier busy;
+    private final Object archiveLock;
+    private final SmartInspectionLogger logger;
+    private volatile boolean stopped;
+    private long windowStartNanos;
+    private long windowBytes;
+    private long deferredMillis;
+
+    ArchiveCompactor(Path historyDir, int compactAfterDays, int retentionDays, long maxBytesPerSecond,
+                     BooleanSupplier busy, Object archiveLock, SmartInspectionLogger logger) {
+        this.historyDir = historyDir;
+        this.compactAfterDays = Math.max(0, compactAfterDays);
+        this.retentionDays = Math.max(0, retentionDays);
+        this.maxBytesPerSecond = Math.max(64 * 1024, maxBytesPerSecond);
+        this.busy = busy;
+        this.archiveLock = archiveLock;
+        this.logger = logger;
+    }
+
+    boolean enabled() {
+        return compactAfterDays > 0 || retentionDays > 0;
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void run() {
+        if (!enabled() || !Files.isDirectory(historyDir)) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate deleteBefore = retentionDays > 0 ? today.minusDays(retentionDays) : LocalDate.MIN;
+        LocalDate compactBefore = compactAfterDays > 0 ? today.minusDays(compactAfterDays) : LocalDate.MIN;
+        int compacted = 0;
+        int deleted = 0;
+        deferredMillis = 0;
+        try {
+            for (ArchiveLayout.Partition p : ArchiveLayout.partitions(historyDir, LocalDate.MIN, today.minusDays(1))) {
+                if (stopped) {
+                    break;
+                }
+                if (p.day().isBefore(deleteBefore)) {
+                    deleted += delete(p);
+                } else if (p.day().isBefore(compactBefore) && p.dir() != null) {
+                    compacted += compact(p);
+                }
+            }
+            if (deleted > 0) {
+                dropExpiredRecords(deleteBefore);
+            }
+            if (retentionDays > 0 && !stopped) {
+                sweepThumbnails(deleteBefore);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            note(Severity.ERROR, "历史归档整理失败，下次继续：" + e.getMessage());
+        }
+        if (compacted > 0 || deleted > 0) {
+            note(Severity.INFO, "历史归档整理完成：打包 " + compacted + " 张，删除过期 " + deleted + " 张");
+            logger.historyChanged(historyDir);
+        }
+    }
+
+    /**
+     * 打包一天的照片：先写隐藏的临时段并刷盘，改名为正式段后改写索引，最后删除原图与空目录。
+     * 中途退出时目录仍在且以目录为准，下次重新打包。
+     */
+    private int compact(ArchiveLayout.Partition p) throws IOException, InterruptedException {
+        List<Path> files = ArchiveLayout.children(p.dir(), null, false);
+        Path segment = ArchiveSegments.segmentOf(p.dir());
+        if (files.isEmpty()) {
+            deleteEmptyDirs(p.dir());
+            return 0;
+        }
+        Path tmp = segment.resolveSibling("." + segment.getFileName() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 ZipOutputStream zip = new ZipOutputStream(java.nio.channels.Channels.newOutputStream(ch))) {
+                zip.setLevel(Deflater.BEST_SPEED);
+                byte[] buf = new byte[CHUNK];
+                for (Path f : files) {
+                    awaitIdle();
+                    ZipEntry entry = new ZipEntry(f.getFileName().toString());
+                    entry.setLastModifiedTime(Files.getLastModifiedTime(f));
+                    if (isJpeg(entry.getName())) {
+                        ByteArrayOutputStream bytes = storeUncompressed(entry, f, buf);
+                        zip.putNextEntry(entry);
+                        bytes.writeTo(zip);
+                    } else {
+                        zip.putNextEntry(entry);
+                        copy(f, zip, buf);
+                    }
+                    zip.closeEntry();
+                }
+                zip.finish();
+                zip.flush();
+                ch.force(true);
+            }
+            ArchiveSegments.close(segment);
+            Files.move(tmp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        String looseDir = relative(p.dir()) + "/";
+        String segmentPrefix = relative(segment) + ArchiveSegments.ENTRY_SEPARATOR;
+        synchronized (archiveLock) {
+            HistoryIndex.forHistory(historyDir).rewrite((rel, millis) -> rel.startsWith(looseDir)
+                    ? segmentPrefix + rel.substring(looseDir.length())
+                    : rel);
+        }
+        for (Path f : files) {
+            Files.deleteIfExists(f);
+        }
+        deleteEmptyDirs(p.dir());
+        return files.size();
+    }
+
+    /** 删除一天的照片（松散目录与压缩段），返回删除的照片数。 */
+    private int delete(ArchiveLayout.Partition p) throws IOException {
+        int n = 0;
+        if (p.segment() != null) {
+            n += ArchiveSegments.entries(p.segment()).size();
+            ArchiveSegments.close(p.segment());
+            Files.deleteIfExists(p.segment());
+        }
+        if (p.dir() != null) {
+            for (Path f : ArchiveLayout.children(p.dir(), null, false)) {
+                Files.deleteIfExists(f);
+                n++;
+            }
+            deleteEmptyDirs(p.dir());
+        } else if (p.segment() != null) {
+            deleteEmptyDirs(p.segment().getParent());
+        }
+        return n;
+    }
+
+    /** 删除已过期分区的索引记录（按相对路径中的分区日期判断，松散目录与压缩段同样处理）。 */
+    private void dropExpiredRecords(LocalDate deleteBefore) throws IOException {
+        synchronized (archiveLock) {
+            HistoryIndex.forHistory(historyDir).rewrite((rel, millis) -> {
+                LocalDate day = partitionDay(rel);
+                return day != null && day.isBefore(deleteBefore) ? null : rel;
+            });
+        }
+    }
+
+    /** 相对路径 {@code yyyy/MM/dd/...} 或 {@code yyyy/MM/dd.zip!/...} 所属的分区日期。 */
+    private static LocalDate partitionDay(String relative) {
+        if (relative.length() < 10 || relative.charAt(4) != '/' || relative.charAt(7) != '/') {
+            return null;
+        }
+        try {
+            return LocalDate.of(Integer.parseInt(relative.substring(0, 4)),
+                    Integer.parseInt(relative.substring(5, 7)), Integer.parseInt(relative.substring(8, 10)));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void sweepThumbnails(LocalDate deleteBefore) throws IOException {
+        Path thumbs = historyDir.resolve(THUMB_DIR);
+        if (!Files.isDirectory(thumbs)) {
+            return;
+        }
+        FileTime cutoff = FileTime.from(deleteBefore.atStartOfDay(java.time.ZoneId.systemDefault()).toInstant());
+        try (Stream<Path> stream = Files.list(thumbs)) {
+            for (Path t : (Iterable<Path>) stream::iterator) {
+                if (Files.isRegularFile(t) && Files.getLastModifiedTime(t).compareTo(cutoff) < 0) {
+                    Files.deleteIfExists(t);
+                }
+            }
+        }
+    }
+
+    /** 依次删除空的日、月、年目录，不越过 his/。 */
+    private void deleteEmptyDirs(Path dir) throws IOException {
+        Path d = dir;
+        while (d != null && !d.equals(historyDir) && d.startsWith(historyDir)) {
+            try (Stream<Path> s = Files.list(d)) {
+                if (s.findAny().isPresent()) {
+                    return;
+                }
+            }
+            Files.deleteIfExists(d);
+            d = d.getParent();
+        }
+    }
+
+    private String relative(Path p) {
+        return historyDir.relativize(p).toString().replace('\\', '/');
+    }
+
+    private void copy(Path file, OutputStream out, byte[] buf) throws IOException, InterruptedException {
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+                throttle(n);
+            }
+        }
+    }
+
+    private static boolean isJpeg(String name) {
+        String lower = name.toLowerCase(java.util.Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
+    /**
+     * STORED 条目须在写入前给出大小与 CRC：限速读一遍，边读边算 CRC 并留在内存中（每个条目只是一张照片），
+     * 返回的字节随后直接写入段，文件只读一次。
+     */
+    private ByteArrayOutputStream storeUncompressed(ZipEntry entry, Path file, byte[] buf) throws IOException, InterruptedException {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.min(Files.size(file), Integer.MAX_VALUE - 8));
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                crc.update(buf, 0, n);
+                bytes.write(buf, 0, n);
+                throttle(n);
+            }
+        }
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.size());
+        entry.setCompressedSize(bytes.size());
+        entry.setCrc(crc.getValue());
+        return bytes;
+    }
+
+    /** 每秒窗口内超出配额时睡到窗口结束。 */
+    private void throttle(int bytes) throws InterruptedException {
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= TimeUnit.SECONDS.toNanos(1)) {
+            windowStartNanos = now;
+            windowBytes = 0;
+        }
+        windowBytes += bytes;
+        if (windowBytes >= maxBytesPerSecond) {
+            long sleepNanos = TimeUnit.SECONDS.toNanos(1) - (now - windowStartNanos);
+            if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+            windowStartNanos = System.nanoTime();
+            windowBytes = 0;
+        }
+        if (stopped) {
+            throw new InterruptedException("已停止");
+        }
+    }
+
+    /** 流水线有照片在处理时让路；累计让路超过上限后只短暂让出，保证整理仍能推进。 */
+    private void awaitIdle() throws InterruptedException {
+        while (busy.getAsBoolean() && !stopped) {
+            if (deferredMillis >= MAX_DEFER_MILLIS) {
+                Thread.sleep(BUSY_YIELD_MILLIS);
+                break;
+            }
+            Thread.sleep(BUSY_WAIT_MILLIS);
+            deferredMillis += BUSY_WAIT_MILLIS;
+        }
+        if (stopped) {
+            throw new InterruptedException("已停止");
+        }
+    }
+
+    private void note(Severity severity, String text) {
+        logger.event(InspectionEvent.note(Stage.STORAGE, severity, text));
+    }
+}
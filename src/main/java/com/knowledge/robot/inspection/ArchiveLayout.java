@@ -0,0 +1,206 @@
+package com.knowledge.robot.inspection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * his/ 的按日期分区布局：归档照片存放在 {@code his/yyyy/MM/dd/yyyyMMdd_HHmmss_原文件名}，
+ * 单个目录的文件数只与一天的点检量相当，列目录与 {@code Files.move} 不再随历史总量变慢。
+ * 以“.”开头的目录（{@code .index}、{@code .thumbs} 等）不属于归档。
+ * <p>
+ * 超过保留期的一天可被打包为同名压缩段 {@code his/yyyy/MM/dd.zip}（见 {@link ArchiveSegments}）。
+ * 旧版本把所有照片平铺在 his/ 下，由 {@link #migrateFlat} 一次性搬入分区（保留修改时间），
+ * 完成后在 {@code .index} 下写入标记，之后启动不再检查。
+ */
+final class ArchiveLayout {
+    static final DateTimeFormatter ARCHIVE_TS_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern ARCHIVE_NAME = Pattern.compile("\\d{8}_\\d{6}_.+");
+    private static final Pattern YEAR = Pattern.compile("\\d{4}");
+    private static final Pattern MONTH_OR_DAY = Pattern.compile("\\d{2}");
+    private static final Pattern SEGMENT = Pattern.compile("\\d{2}\\.zip");
+    private static final String MIGRATED_MARKER = "layout-dated";
+
+    private ArchiveLayout() {
+    }
+
+    /** 某一天的分区目录 {@code his/yyyy/MM/dd}。 */
+    static Path partition(Path historyDir, LocalDate day) {
+        return historyDir.resolve(String.format("%04d", day.getYear()))
+                .resolve(String.format("%02d", day.getMonthValue()))
+                .resolve(String.format("%02d", day.getDayOfMonth()));
+    }
+
+    /** 归档时间为 {@code ts} 的照片应放置的位置（分区目录需由调用方创建）。 */
+    static Path target(Path historyDir, LocalDateTime ts, String originalName) {
+        return partition(historyDir, ts.toLocalDate()).resolve(ARCHIVE_TS_FORMAT.format(ts) + "_" + originalName);
+    }
+
+    /** 平铺归档名对应的分区相对路径 {@code yyyy/MM/dd/归档名}，使用 '/' 分隔。 */
+    static String relativeTarget(String archivedName, long archivedMillis) {
+        LocalDate day = dayOf(archivedName, archivedMillis);
+        return String.format("%04d/%02d/%02d/", day.getYear(), day.getMonthValue(), day.getDayOfMonth())
+                + archivedName;
+    }
+
+    /** 归档所属日期：优先取归档名中的时间戳，不符合格式时按修改时间。 */
+    static LocalDate dayOf(String archivedName, long fallbackMillis) {
+        if (ARCHIVE_NAME.matcher(archivedName).matches()) {
+            try {
+                return LocalDate.parse(archivedName.substring(0, 8), DAY_FORMAT);
+            } catch (DateTimeParseException ignored) {
+                // 数字但不是合法日期，按修改时间
+            }
+        }
+        return LocalDate.ofInstant(Instant.ofEpochMilli(fallbackMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * 一天的分区：松散照片目录 {@code dir} 与压缩段 {@code segment}，不存在的为 null。
+     * 两者同时存在（压缩中途退出）时以目录为准。
+     */
+    record Partition(LocalDate day, Path dir, Path segment) {
+    }
+
+    /** 全部归档照片：各分区按日期顺序，以及尚未迁移的平铺文件。 */
+    static List<Path> files(Path historyDir) throws IOException {
+        return files(historyDir, LocalDate.MIN, LocalDate.MAX);
+    }
+
+    /**
+     * 归档日期在 [from, to] 内的照片。只打开与范围重叠的年、月、日目录（或压缩段），
+     * 分区按日期升序、分区内按文件名（即归档时间）升序。
+     */
+    static List<Path> files(Path historyDir, LocalDate from, LocalDate to) throws IOException {
+        List<Path> out = new ArrayList<>();
+        for (Partition p : partitions(historyDir, from, to)) {
+            out.addAll(p.dir() != null ? children(p.dir(), null, false) : ArchiveSegments.entries(p.segment()));
+        }
+        if (Files.isDirectory(historyDir)) {
+            for (Path flat : children(historyDir, null, false)) {
+                LocalDate day = dayOf(flat.getFileName().toString(), Files.getLastModifiedTime(flat).toMillis());
+                if (!day.isBefore(from) && !day.isAfter(to)) {
+                    out.add(flat);
+                }
+            }
+        }
+        return out;
+    }
+
+    /** 日期在 [from, to] 内的分区，按日期升序；只列出与范围重叠的年、月目录。 */
+    static List<Partition> partitions(Path historyDir, LocalDate from, LocalDate to) throws IOException {
+        List<Partition> out = new ArrayList<>();
+        if (!Files.isDirectory(historyDir)) {
+            return out;
+        }
+        for (Path year : children(historyDir, YEAR, true)) {
+            int y = Integer.parseInt(year.getFileName().toString());
+            if (y < from.getYear() || y > to.getYear()) {
+                continue;
+            }
+            for (Path month : children(year, MONTH_OR_DAY, true)) {
+                int m = Integer.parseInt(month.getFileName().toString());
+                if (m < 1 || m > 12 || before(y, m, 31, from) || after(y, m, 1, to)) {
+                    continue;
+                }
+                Map<Integer, Partition> days = new TreeMap<>();
+                for (Path day : children(month, MONTH_OR_DAY, true)) {
+                    int d = Integer.parseInt(day.getFileName().toString());
+                    days.put(d, new Partition(null, day, null));
+                }
+                for (Path segment : children(month, SEGMENT, false)) {
+                    String n = segment.getFileName().toString();
+                    int d = Integer.parseInt(n.substring(0, 2));
+                    Partition loose = days.get(d);
+                    days.put(d, new Partition(null, loose != null ? loose.dir() : null, segment));
+                }
+                for (Map.Entry<Integer, Partition> e : days.entrySet()) {
+                    int d = e.getKey();
+                    if (d < 1 || d > 31 || before(y, m, d, from) || after(y, m, d, to)) {
+                        continue;
+                    }
+                    try {
+                        out.add(new Partition(LocalDate.of(y, m, d), e.getValue().dir(), e.getValue().segment()));
+                    } catch (DateTimeException ignored) {
+                        // 不存在的日期（如 02/30），不是本程序建立的目录
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static boolean before(int y, int m, int d, LocalDate bound) {
+        return y * 10000 + m * 100 + d < bound.getYear() * 10000L + bound.getMonthValue() * 100 + bound.getDayOfMonth();
+    }
+
+    private static boolean after(int y, int m, int d, LocalDate bound) {
+        return y * 10000 + m * 100 + d > bound.getYear() * 10000L + bound.getMonthValue() * 100 + bound.getDayOfMonth();
+    }
+
+    /** 按名称排序的子目录（{@code directories}）或非隐藏的普通文件；{@code name} 为 null 时不限名称。 */
+    static List<Path> children(Path dir, Pattern name, boolean directories) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream
+                    .filter(p -> {
+                        String n = p.getFileName().toString();
+                        if (n.startsWith(".") || (name != null && !name.matcher(n).matches())) {
+                            return false;
+                        }
+                        return directories ? Files.isDirectory(p) : Files.isRegularFile(p);
+                    })
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    static boolean migrated(Path historyDir) {
+        return Files.exists(historyDir.resolve(ProcessedJournal.INDEX_DIR).resolve(MIGRATED_MARKER));
+    }
+
+    static void markMigrated(Path historyDir) throws IOException {
+        Path dir = historyDir.resolve(ProcessedJournal.INDEX_DIR);
+        Files.createDirectories(dir);
+        Path marker = dir.resolve(MIGRATED_MARKER);
+        if (!Files.exists(marker)) {
+            Files.createFile(marker);
+        }
+    }
+
+    /**
+     * 把直接位于 his/ 下的归档照片移入对应日期分区，返回移动的数量。
+     * {@code Files.move} 保留修改时间，目标已存在（上次迁移中断）时保留原位置等待人工处理。
+     */
+    static int migrateFlat(Path historyDir) throws IOException {
+        if (!Files.isDirectory(historyDir)) {
+            return 0;
+        }
+        int moved = 0;
+        for (Path flat : children(historyDir, null, false)) {
+            String name = flat.getFileName().toString();
+            Path target = historyDir.resolve(relativeTarget(name, Files.getLastModifiedTime(flat).toMillis()));
+            if (Files.exists(target)) {
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(flat, target);
+            moved++;
+        }
+        return moved;
+    }
+}
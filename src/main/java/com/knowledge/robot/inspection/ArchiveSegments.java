@@ -0,0 +1,140 @@
+package com.knowledge.robot.inspection;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 压缩段：过期的一天归档由 {@link ArchiveCompactor} 打包为 {@code his/yyyy/MM/dd.zip}，
+ * 条目名即归档文件名。段以只读 zip 文件系统打开，段内照片以 {@link Path} 形式参与历史查询、
+ * 缩略图与打开原图，调用方无需区分。历史索引中段内照片的相对路径写作 {@code yyyy/MM/dd.zip!/归档名}。
+ * <p>
+ * 打开的段按段文件缓存；重写或删除段之前必须先 {@link #close}。读取段内照片要经过 {@link #read}：
+ * 读取期间持该段的读锁，{@link #close} 取写锁，等正在读的缩略图解码或打开原图结束后才关闭文件系统；
+ * 读到已关闭的旧实例上的路径时换到重新打开的段上读。
+ */
+final class ArchiveSegments {
+    static final String SUFFIX = ".zip";
+    static final String ENTRY_SEPARATOR = "!/";
+    private static final Map<Path, FileSystem> OPEN = new ConcurrentHashMap<>();
+    /** 文件系统到段文件；关闭后仍保留（弱引用），旧路径还能找到所属的段 */
+    private static final Map<FileSystem, Path> SEGMENT_OF = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Map<Path, ReadWriteLock> LOCKS = new ConcurrentHashMap<>();
+
+    private ArchiveSegments() {
+    }
+
+    /** 日期分区目录对应的段文件 {@code .../MM/dd.zip}。 */
+    static Path segmentOf(Path dayDir) {
+        return dayDir.resolveSibling(dayDir.getFileName() + SUFFIX);
+    }
+
+    static boolean isEntry(Path p) {
+        return p.getFileSystem() != FileSystems.getDefault();
+    }
+
+    /** 段内全部照片，按归档名升序。 */
+    static List<Path> entries(Path segment) throws IOException {
+        try (Stream<Path> stream = Files.list(open(segment).getPath("/"))) {
+            return stream.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    /** 索引中的相对路径还原为 Path：段内条目打开对应的段，其余按普通文件解析。 */
+    static Path resolve(Path historyDir, String relative) throws IOException {
+        int sep = relative.indexOf(ENTRY_SEPARATOR);
+        if (sep < 0) {
+            return historyDir.resolve(relative);
+        }
+        return open(historyDir.resolve(relative.substring(0, sep)))
+                .getPath("/" + relative.substring(sep + ENTRY_SEPARATOR.length()));
+    }
+
+    /** 写入索引的相对路径，统一使用 '/' 分隔。 */
+    static String relative(Path historyDir, Path p) {
+        if (isEntry(p)) {
+            Path segment = SEGMENT_OF.get(p.getFileSystem());
+            if (segment == null) {
+                throw new IllegalArgumentException("段已关闭：" + p);
+            }
+            return slashes(historyDir.relativize(segment)) + ENTRY_SEPARATOR + p.getFileName();
+        }
+        return slashes(historyDir.relativize(p.toAbsolutePath().normalize()));
+    }
+
+    private static String slashes(Path relative) {
+        return relative.toString().replace('\\', '/');
+    }
+
+    /** 在段的读锁内读取 {@code p}；普通文件直接读取。 */
+    static <T> T read(Path p, HistoryIndex.ArchiveReader<T> reader) throws IOException {
+        if (!isEntry(p)) {
+            return reader.read(p);
+        }
+        Path segment = SEGMENT_OF.get(p.getFileSystem());
+        if (segment == null) {
+            throw new NoSuchFileException(p.toString());
+        }
+        Lock lock = lockOf(segment).readLock();
+        lock.lock();
+        try {
+            FileSystem fs = open(segment);
+            return reader.read(fs == p.getFileSystem() ? p : fs.getPath(p.toString()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ReadWriteLock lockOf(Path segment) {
+        return LOCKS.computeIfAbsent(segment, k -> new ReentrantReadWriteLock());
+    }
+
+    static FileSystem open(Path segment) throws IOException {
+        Path key = segment.toAbsolutePath().normalize();
+        FileSystem fs = OPEN.get(key);
+        if (fs != null && fs.isOpen()) {
+            return fs;
+        }
+        synchronized (OPEN) {
+            fs = OPEN.get(key);
+            if (fs == null || !fs.isOpen()) {
+                fs = FileSystems.newFileSystem(key, Map.of("accessMode", "readOnly"));
+                OPEN.put(key, fs);
+                SEGMENT_OF.put(fs, key);
+            }
+            return fs;
+        }
+    }
+
+    /** 等该段上的读取结束后关闭缓存的文件系统；加锁顺序与 {@link #read} 相同，先段锁、后缓存。 */
+    static void close(Path segment) throws IOException {
+        Path key = segment.toAbsolutePath().normalize();
+        Lock lock = lockOf(key).writeLock();
+        lock.lock();
+        try {
+            synchronized (OPEN) {
+                FileSystem fs = OPEN.remove(key);
+                if (fs != null) {
+                    fs.close();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.knowledge.robot.inspection;
+
+/**
+ * 一次识别（completion）流式调用的结果与耗时。
+ *
+ * @param firstEventMillis 从发出请求到收到第一条事件的时间
+ * @param totalMillis      从发出请求到收到结束事件（或流结束）的时间
+ * @param bytes            读取的响应字节数
+ * @param content          拼接后的智能体回复内容
+ * @param terminated       是否收到了明确的结束事件
+ */
+record CompletionResult(long firstEventMillis, long totalMillis, long bytes, String content, boolean terminated) {
+}
@@ -0,0 +1,76 @@
+package com.knowledge.robot.inspection;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.BiConsumer;
+
+/**
+ * 基于 {@link WatchService} 的目录监听：新建/修改事件立即回调，
+ * 事件溢出（OVERFLOW）时回调 {@code onOverflow}，由调用方做一次全量对账扫描。
+ */
+final class FolderWatcher implements AutoCloseable {
+    private final Path folder;
+    private final BiConsumer<Path, Long> onChange;
+    private final Runnable onOverflow;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * @param onChange 参数为发生变化的文件绝对路径、事件被感知时的 {@link System#nanoTime()}
+     */
+    FolderWatcher(Path folder, BiConsumer<Path, Long> onChange, Runnable onOverflow) throws IOException {
+        this.folder = folder;
+        this.onChange = onChange;
+        this.onOverflow = onOverflow;
+        this.watchService = folder.getFileSystem().newWatchService();
+        folder.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::runLoop, "smart-inspection-watch");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    private void runLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            long observedAt = System.nanoTime();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    onOverflow.run();
+                    continue;
+                }
+                if (event.context() instanceof Path name) {
+                    onChange.accept(folder.resolve(name), observedAt);
+                }
+            }
+            if (!key.reset()) {
+                // 目录被删除或不可访问，交给对账扫描兜底
+                onOverflow.run();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.knowledge.robot.inspection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 归档记录索引，供历史面板按时间范围查询，不再每次遍历 his/ 目录。
+ * <ul>
+ *   <li>{@code history.dat}：按归档时间顺序追加的文本记录（排序时间、归档时间、大小、结果、原文件名、相对归档路径）；</li>
+ *   <li>{@code history.sparse}：每 {@value #STRIDE} 条记录一个 (排序时间, 文件偏移) 稀疏点。</li>
+ * </ul>
+ * 查询时二分稀疏点定位起始偏移，再顺序读到范围末尾，复杂度 O(log n + k)。
+ * 排序时间取归档时间与上一条的较大值，保证系统时钟回拨时文件仍然有序。
+ * 已打包进压缩段的照片以段内路径返回（见 {@link ArchiveSegments}）。
+ * 数据文件缺失时按日期分区从 his/ 现有归档重建。同一归档目录在进程内共用一个实例。
+ */
+public final class HistoryIndex {
+    private static final String DATA_FILE = "history.dat";
+    private static final String SPARSE_FILE = "history.sparse";
+    private static final int STRIDE = 64;
+    private static final Map<Path, HistoryIndex> SHARED = new ConcurrentHashMap<>();
+
+    public enum Outcome {
+        /** 上传并识别完成 */
+        COMPLETED,
+        /** 复用了缓存或上次中断前的识别结果 */
+        REUSED,
+        /** 从 his/ 重建，结果未知 */
+        UNKNOWN
+    }
+
+    public record HistoryRecord(long archivedMillis, String originalName, Path archivePath, long size,
+                                Outcome outcome) {
+    }
+
+    private final Path historyDir;
+    private final Path dataFile;
+    private final Path sparseFile;
+    private FileChannel data;
+    private FileChannel sparse;
+    private long[] sparseMillis = new long[64];
+    private long[] sparseOffsets = new long[64];
+    private int sparseCount;
+    private long records;
+    private long lastSortMillis = Long.MIN_VALUE;
+    /**
+     * 查询在释放监视器后仍按偏移读取数据文件，读期间持读锁；{@link #rewrite} 替换文件前取写锁，等在读的查询结束。
+     * 加锁顺序固定为先读写锁、后监视器。
+     */
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+
+    private HistoryIndex(Path historyDir) {
+        this.historyDir = historyDir;
+        Path dir = historyDir.resolve(ProcessedJournal.INDEX_DIR);
+        this.dataFile = dir.resolve(DATA_FILE);
+        this.sparseFile = dir.resolve(SPARSE_FILE);
+    }
+
+    /** 取（必要时打开或重建）指定归档目录的索引。 */
+    public static HistoryIndex forHistory(Path historyDir) throws IOException {
+        try {
+            return SHARED.computeIfAbsent(historyDir.toAbsolutePath().normalize(), d -> {
+                HistoryIndex index = new HistoryIndex(d);
+                try {
+                    index.load();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return index;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public synchronized long size() {
+        return records;
+    }
+
+    /** 追加一条归档记录；由归档线程在移动文件后调用。 */
+    synchronized void append(HistoryRecord record) throws IOException {
+        long sortMillis = Math.max(record.archivedMillis(), lastSortMillis);
+        long offset = data.size();
+        writeAt(ByteBuffer.wrap(format(sortMillis, record).getBytes(StandardCharsets.UTF_8)), offset);
+        onRecord(sortMillis, offset, true);
+    }
+
+    /** 查询归档时间落在 [fromMillis, toMillis] 内的记录，按时间升序。 */
+    public List<HistoryRecord> query(long fromMillis, long toMillis) throws IOException {
+        List<HistoryRecord> out = new ArrayList<>();
+        scan(fromMillis, toMillis, Integer.MAX_VALUE, page -> out.addAll(page));
+        return out;
+    }
+
+    /**
+     * 按时间升序分页读取 [fromMillis, toMillis] 内的记录，每凑满 {@code pageSize} 条回调一次（最后一页可能不足）；
+     * 回调返回 false 时停止读取。
+     */
+    public void scan(long fromMillis, long toMillis, int pageSize, Predicate<List<HistoryRecord>> onPage)
+            throws IOException {
+        fileLock.readLock().lock();
+        try {
+            scanLocked(fromMillis, toMillis, pageSize, onPage);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    private void scanLocked(long fromMillis, long toMillis, int pageSize, Predicate<List<HistoryRecord>> onPage)
+            throws IOException {
+        long start;
+        long end;
+        synchronized (this) {
+            start = startOffset(fromMillis);
+            end = data.size();
+        }
+        if (start >= end) {
+            return;
+        }
+        List<HistoryRecord> page = new ArrayList<>(Math.min(pageSize, 1024));
+        try (FileChannel ch = FileChannel.open(dataFile, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(ch.position(start)), StandardCharsets.UTF_8), 1 << 16)) {
+            long remaining = end - start;
+            String line;
+            while (remaining > 0 && (line = reader.readLine()) != null) {
+                remaining -= line.getBytes(StandardCharsets.UTF_8).length + 1;
+                String[] p = line.split("\t", -1);
+                if (p.length < 6) {
+                    continue;
+                }
+                long sortMillis;
+                try {
+                    sortMillis = Long.parseLong(p[0]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (sortMillis > toMillis) {
+                    break;
+                }
+                HistoryRecord r = parse(p);
+                if (r != null && r.archivedMillis() >= fromMillis && r.archivedMillis() <= toMillis) {
+                    page.add(r);
+                    if (page.size() >= pageSize) {
+                        if (!onPage.test(page)) {
+                            return;
+                        }
+                        page = new ArrayList<>(Math.min(pageSize, 1024));
+                    }
+                }
+            }
+        }
+        if (!page.isEmpty()) {
+            onPage.test(page);
+        }
+    }
+
+    // ================= 加载与重建 =================
+
+    private void load() throws IOException {
+        Files.createDirectories(dataFile.getParent());
+        boolean rebuilt = false;
+        if (!Files.exists(dataFile)) {
+            rebuildFromArchive();
+            rebuilt = true;
+        }
+        data = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        terminateTornTail();
+        sparse = FileChannel.open(sparseFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long resumeFrom = rebuilt ? 0 : loadSparse();
+        if (resumeFrom == 0) {
+            sparse.truncate(0);
+            sparseCount = 0;
+            records = 0;
+        }
+        scan(resumeFrom);
+    }
+
+    /**
+     * 读入稀疏点并校验（偏移递增且落在数据文件内、时间不减）；返回需要继续扫描的数据偏移，
+     * 即最后一个有效稀疏点的位置。稀疏文件损坏时返回 0，从头扫描。
+     */
+    private long loadSparse() throws IOException {
+        long dataSize = data.size();
+        int n = (int) (sparse.size() / 16);
+        ByteBuffer buf = ByteBuffer.allocate(n * 16);
+        sparse.read(buf, 0);
+        buf.flip();
+        long prevMillis = Long.MIN_VALUE;
+        long prevOffset = -1;
+        int valid = 0;
+        for (int i = 0; i < n; i++) {
+            long millis = buf.getLong();
+            long offset = buf.getLong();
+            if (offset <= prevOffset || offset >= dataSize || millis < prevMillis || !isLineStart(offset)) {
+                break;
+            }
+            addSparse(millis, offset);
+            prevMillis = millis;
+            prevOffset = offset;
+            valid++;
+        }
+        if (valid == 0) {
+            return 0;
+        }
+        // 最后一个稀疏点对应的记录由 scan 重新计入
+        sparseCount--;
+        records = (long) sparseCount * STRIDE;
+        lastSortMillis = sparseCount > 0 ? sparseMillis[sparseCount - 1] : Long.MIN_VALUE;
+        sparse.truncate((long) sparseCount * 16);
+        return prevOffset;
+    }
+
+    private boolean isLineStart(long offset) throws IOException {
+        if (offset == 0) {
+            return true;
+        }
+        ByteBuffer b = ByteBuffer.allocate(1);
+        data.read(b, offset - 1);
+        return b.get(0) == '\n';
+    }
+
+    private void scan(long fromOffset) throws IOException {
+        long offset = fromOffset;
+        try (FileChannel ch = FileChannel.open(dataFile, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(ch.position(fromOffset)), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long lineStart = offset;
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                int tab = line.indexOf('\t');
+                if (tab <= 0 || line.split("\t", -1).length < 6) {
+                    continue;
+                }
+                try {
+                    onRecord(Math.max(Long.parseLong(line.substring(0, tab)), lastSortMillis), lineStart, true);
+                } catch (NumberFormatException ignored) {
+                    // 截断的记录
+                }
+            }
+        }
+    }
+
+    private void onRecord(long sortMillis, long offset, boolean persist) throws IOException {
+        if (records % STRIDE == 0) {
+            addSparse(sortMillis, offset);
+            if (persist) {
+                ByteBuffer b = ByteBuffer.allocate(16).putLong(sortMillis).putLong(offset).flip();
+                sparse.write(b, (long) (sparseCount - 1) * 16);
+            }
+        }
+        records++;
+        lastSortMillis = sortMillis;
+    }
+
+    private void addSparse(long millis, long offset) {
+        if (sparseCount == sparseMillis.length) {
+            sparseMillis = java.util.Arrays.copyOf(sparseMillis, sparseCount * 2);
+            sparseOffsets = java.util.Arrays.copyOf(sparseOffsets, sparseCount * 2);
+        }
+        sparseMillis[sparseCount] = millis;
+        sparseOffsets[sparseCount] = offset;
+        sparseCount++;
+    }
+
+    /** 最后一个时间严格小于 fromMillis 的稀疏点；没有时从文件头开始。 */
+    private long startOffset(long fromMillis) {
+        int lo = 0;
+        int hi = sparseCount - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sparseMillis[mid] < fromMillis) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found < 0 ? 0 : sparseOffsets[found];
+    }
+
+    private void terminateTornTail() throws IOException {
+        long size = data.size();
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        data.read(last, size - 1);
+        if (last.get(0) != '\n') {
+            writeAt(ByteBuffer.wrap(new byte[]{'\n'}), size);
+        }
+    }
+
+    private void writeAt(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += data.write(buf, position);
+        }
+    }
+
+    /** 按日期分区遍历归档（跳过 .index 等隐藏目录），按修改时间排序后写出数据文件。 */
+    private void rebuildFromArchive() throws IOException {
+        List<HistoryRecord> found = new ArrayList<>();
+        for (Path p : ArchiveLayout.files(historyDir)) {
+            String archived = p.getFileName().toString();
+            found.add(new HistoryRecord(Files.getLastModifiedTime(p).toMillis(),
+                    ProcessedJournal.originalName(archived), p, Files.size(p), Outcome.UNKNOWN));
+        }
+        found.sort(Comparator.comparingLong(HistoryRecord::archivedMillis));
+        StringBuilder sb = new StringBuilder();
+        for (HistoryRecord r : found) {
+            sb.append(format(r.archivedMillis(), r));
+        }
+        Files.writeString(dataFile, sb, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /** 平铺布局迁移到日期分区后，把仍指向 his/ 根目录的记录改写为分区路径（规则与 {@link ArchiveLayout#migrateFlat} 相同）。 */
+    int relocateFlat() throws IOException {
+        return rewrite((relative, archivedMillis) -> relative.indexOf('/') < 0
+                ? ArchiveLayout.relativeTarget(relative, archivedMillis)
+                : relative);
+    }
+
+    /** 记录改写规则：给出相对归档路径与归档时间，返回新的相对路径；返回 null 删除该记录。 */
+    interface PathRewrite {
+        String apply(String relative, long archivedMillis);
+    }
+
+    /**
+     * 按 {@code rule} 改写（或删除）记录的归档路径。先写临时文件再替换，随后重建稀疏点；
+     * 没有记录变化时不动文件。返回改写与删除的条数。替换期间持写锁，正在进行的查询读完后才换文件。
+     */
+    int rewrite(PathRewrite rule) throws IOException {
+        fileLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                return rewriteLocked(rule);
+            }
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    private int rewriteLocked(PathRewrite rule) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int changed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(dataFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] p = line.split("\t", -1);
+                if (p.length < 6) {
+                    continue;
+                }
+                String relative = ProcessedJournal.unescape(p[5]);
+                String updated;
+                try {
+                    updated = rule.apply(relative, Long.parseLong(p[1]));
+                } catch (NumberFormatException e) {
+                    updated = relative; // 损坏的记录原样保留，查询时会被跳过
+                }
+                if (updated == null) {
+                    changed++;
+                    continue;
+                }
+                if (!updated.equals(relative)) {
+                    p[5] = ProcessedJournal.escape(updated);
+                    changed++;
+                }
+                sb.append(String.join("\t", p)).append('\n');
+            }
+        }
+        if (changed == 0) {
+            return 0;
+        }
+        Path tmp = dataFile.resolveSibling(DATA_FILE + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        data.close();
+        sparse.close();
+        Files.move(tmp, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        data = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        sparse = FileChannel.open(sparseFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        sparse.truncate(0);
+        sparseCount = 0;
+        records = 0;
+        lastSortMillis = Long.MIN_VALUE;
+        scan(0);
+        return changed;
+    }
+
+    /** 读取一张归档照片的动作，参数为此刻可读的路径。 */
+    public interface ArchiveReader<T> {
+        T read(Path file) throws IOException;
+    }
+
+    /**
+     * 读取归档照片：压缩段内的照片在段的读锁内读取，不会被并发的打包或清理关闭文件系统；普通归档直接读取。
+     */
+    public static <T> T readArchived(Path archivePath, ArchiveReader<T> reader) throws IOException {
+        return ArchiveSegments.read(archivePath, reader);
+    }
+
+    /**
+     * 返回可交给系统程序打开的本地文件：普通归档直接返回；已打包进压缩段的照片解压到临时文件（退出时删除）。
+     */
+    public static Path localFile(Path archivePath) throws IOException {
+        if (!ArchiveSegments.isEntry(archivePath)) {
+            return archivePath;
+        }
+        String name = archivePath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        Path tmp = Files.createTempFile("history-", dot >= 0 ? name.substring(dot) : ".img");
+        tmp.toFile().deleteOnExit();
+        ArchiveSegments.read(archivePath, entry -> Files.copy(entry, tmp, StandardCopyOption.REPLACE_EXISTING));
+        return tmp;
+    }
+
+    private String format(long sortMillis, HistoryRecord r) {
+        String relative = ArchiveSegments.relative(historyDir, r.archivePath());
+        return sortMillis + "\t" + r.archivedMillis() + '\t' + r.size() + '\t' + r.outcome().name() + '\t'
+                + ProcessedJournal.escape(r.originalName()) + '\t' + ProcessedJournal.escape(relative) + '\n';
+    }
+
+    private HistoryRecord parse(String[] p) {
+        try {
+            return new HistoryRecord(Long.parseLong(p[1]), ProcessedJournal.unescape(p[4]),
+                    resolve(ProcessedJournal.unescape(p[5])), Long.parseLong(p[2]), Outcome.valueOf(p[3]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** 段文件丢失或损坏时返回一个不存在的路径，历史表格照常列出，缩略图显示为无法读取。 */
+    private Path resolve(String relative) {
+        try {
+            return ArchiveSegments.resolve(historyDir, relative);
+        } catch (IOException | RuntimeException e) {
+            return historyDir.resolve(relative.replace(ArchiveSegments.ENTRY_SEPARATOR, "/"));
+        }
+    }
+}
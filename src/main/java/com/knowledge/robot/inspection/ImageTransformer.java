@@ -0,0 +1,75 @@
+package com.knowledge.robot.inspection;
+
+import com.knowledge.robot.util.ImageScaling;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 上传前的图片压缩：解码一次，按最长边缩放，再以指定质量重新编码为 JPEG，全部在内存中完成。
+ */
+final class ImageTransformer {
+    private final int maxEdge;
+    private final float quality;
+
+    /**
+     * @param bytes         压缩后的 JPEG 数据
+     * @param uploadName    上传时使用的文件名（扩展名改为 .jpg）
+     * @param originalBytes 原文件大小
+     * @param encodeNanos   解码 + 缩放 + 编码耗时
+     */
+    record Result(byte[] bytes, String uploadName, long originalBytes, long encodeNanos) {
+        long savedBytes() {
+            return originalBytes - bytes.length;
+        }
+    }
+
+    ImageTransformer(int maxEdge, float quality) {
+        this.maxEdge = Math.max(64, maxEdge);
+        this.quality = Math.max(0.1f, Math.min(1.0f, quality));
+    }
+
+    /** 压缩后不比原图小（或无法解码）时返回 null，由调用方直接上传原文件。 */
+    Result transform(Path source) throws IOException {
+        long start = System.nanoTime();
+        long originalBytes = Files.size(source);
+        BufferedImage decoded = ImageIO.read(source.toFile());
+        if (decoded == null) {
+            return null;
+        }
+        BufferedImage scaled = ImageScaling.fitWithin(decoded, maxEdge);
+        byte[] encoded = encodeJpeg(scaled, (int) Math.min(originalBytes, Integer.MAX_VALUE / 2));
+        if (encoded.length >= originalBytes) {
+            return null;
+        }
+        return new Result(encoded, jpegName(source.getFileName().toString()), originalBytes, System.nanoTime() - start);
+    }
+
+    private byte[] encodeJpeg(BufferedImage img, int sizeHint) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(8192, sizeHint / 4));
+        try (MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static String jpegName(String name) {
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + ".jpg";
+    }
+}
@@ -0,0 +1,32 @@
+package com.knowledge.robot.inspection;
+
+import java.util.List;
+
+/**
+ * 一次批量上传 / 识别的照片组：共用一个 chatId，识别时把各自的 refId 放进同一个 refs 数组。
+ */
+final class InspectionBatch {
+    private final List<InspectionItem> items;
+    private final String chatId;
+
+    InspectionBatch(List<InspectionItem> items) {
+        this.items = List.copyOf(items);
+        this.chatId = items.get(0).chatId();
+    }
+
+    List<InspectionItem> items() { return items; }
+
+    String chatId() { return chatId; }
+
+    long appId() { return items.get(0).appId(); }
+
+    List<Long> refIds() {
+        return items.stream().map(InspectionItem::refId).toList();
+    }
+
+    /** 日志用描述：单张时为文件名，多张时为“首个文件名 等 N 张”。 */
+    String describe() {
+        String first = items.get(0).fileName();
+        return items.size() == 1 ? first : first + " 等 " + items.size() + " 张";
+    }
+}
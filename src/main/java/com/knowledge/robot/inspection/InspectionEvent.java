@@ -0,0 +1,150 @@
+package com.knowledge.robot.inspection;
+
+/**
+ * 智能点检的结构化日志事件：事件类型、所属阶段、严重程度以及文件名、chatId、耗时、字节数等字段。
+ * 界面按 {@link #severity()} 着色、按 {@link #type()} 计数，不再对文本做字符串匹配；
+ * 文本只在真正显示时由 {@link #render()} 拼出。
+ *
+ * @param timeMillis     事件发生时间
+ * @param durationMillis 本步骤耗时（压缩编码、上传响应、识别总耗时等），无则为 0
+ * @param latencyMillis  等待类耗时（发现至上传、识别首个事件），无则为 0
+ * @param bytes          涉及的字节数（原图大小、识别响应大小），无则为 0
+ * @param savedBytes     压缩节省的字节数，无则为 0
+ * @param detail         附加文本（失败原因、识别结果、缓存统计），或 {@link Type#NOTE} 的完整内容
+ */
+public record InspectionEvent(long timeMillis, Type type, Stage stage, Severity severity,
+                              String file, String chatId, long durationMillis, long latencyMillis,
+                              long bytes, long savedBytes, String detail) {
+
+    /** 识别结果在日志中最多显示的字数 */
+    private static final int RESULT_PREVIEW_CHARS = 80;
+
+    public enum Stage {
+        /** 启动、停止、配置 */
+        LIFECYCLE,
+        /** 扫描与目录监听 */
+        DISCOVER,
+        /** 内容哈希、缓存查询、压缩 */
+        PREPARE,
+        UPLOAD,
+        COMPLETION,
+        ARCHIVE,
+        /** 处理记录、工作队列日志等本地持久化 */
+        STORAGE,
+        /** 连接池与自适应限流 */
+        TRANSPORT
+    }
+
+    public enum Severity {
+        INFO,
+        /** 启动、停止等阶段性标记 */
+        NOTICE,
+        SUCCESS,
+        WARN,
+        ERROR
+    }
+
+    public enum Type {
+        /** 自由文本，内容在 {@link #detail()} 中 */
+        NOTE,
+        DISCOVERED,
+        RESUMED,
+        DUPLICATE_CONTENT,
+        UPLOAD_CACHE_HIT,
+        UPLOAD_CACHE_MISS,
+        COMPRESSED,
+        COMPRESS_SKIPPED,
+        UPLOAD_STARTED,
+        UPLOADING,
+        AUTHORIZED,
+        RECOGNIZING,
+        COMPLETED,
+        RESULT,
+        ARCHIVED,
+        INTERRUPTED,
+        FAILED
+    }
+
+    public static InspectionEvent note(Stage stage, Severity severity, String text) {
+        return new InspectionEvent(System.currentTimeMillis(), Type.NOTE, stage, severity,
+                null, null, 0, 0, 0, 0, text);
+    }
+
+    static InspectionEvent of(Type type, Stage stage, Severity severity, String file, String chatId) {
+        return new InspectionEvent(System.currentTimeMillis(), type, stage, severity,
+                file, chatId, 0, 0, 0, 0, null);
+    }
+
+    static InspectionEvent compressed(String file, long originalBytes, long savedBytes, long encodeMillis) {
+        return new InspectionEvent(System.currentTimeMillis(), Type.COMPRESSED, Stage.PREPARE, Severity.INFO,
+                file, null, encodeMillis, 0, originalBytes, savedBytes, null);
+    }
+
+    static InspectionEvent uploadStarted(String file, String chatId, long waitMillis) {
+        return new InspectionEvent(System.currentTimeMillis(), Type.UPLOAD_STARTED, Stage.UPLOAD, Severity.INFO,
+                file, chatId, 0, waitMillis, 0, 0, null);
+    }
+
+    /** 上传被平台接受并返回了图片 ID；{@code responseMillis} 为发出请求到收到响应头的时间。 */
+    static InspectionEvent authorized(String file, String chatId, long responseMillis) {
+        return new InspectionEvent(System.currentTimeMillis(), Type.AUTHORIZED, Stage.UPLOAD, Severity.INFO,
+                file, chatId, responseMillis, 0, 0, 0, null);
+    }
+
+    /** 识别完成；未收到结束事件时记为警告。 */
+    static InspectionEvent completed(String file, String chatId, CompletionResult r) {
+        return new InspectionEvent(System.currentTimeMillis(), Type.COMPLETED, Stage.COMPLETION,
+                r.terminated() ? Severity.SUCCESS : Severity.WARN,
+                file, chatId, r.totalMillis(), r.firstEventMillis(), r.bytes(), 0, null);
+    }
+
+    InspectionEvent withDetail(String detail) {
+        return new InspectionEvent(timeMillis, type, stage, severity, file, chatId,
+                durationMillis, latencyMillis, bytes, savedBytes, detail);
+    }
+
+    /** 显示用的中文文本（不含时间戳）。 */
+    public String render() {
+        return switch (type) {
+            case NOTE -> detail;
+            case DISCOVERED -> "发现点检照片：" + file;
+            case RESUMED -> stage == Stage.ARCHIVE
+                    ? "继续上次未完成的照片（已识别，直接归档）：" + file
+                    : "继续上次未完成的照片（已上传，继续识别）：" + file;
+            case DUPLICATE_CONTENT -> "内容与已识别照片相同，跳过上传与识别：" + file + suffix();
+            case UPLOAD_CACHE_HIT -> "命中上传缓存，跳过上传：" + file + suffix();
+            case UPLOAD_CACHE_MISS -> "上传缓存未命中：" + file + suffix();
+            case COMPRESSED -> "压缩完成：" + file + " " + formatBytes(bytes) + " → " + formatBytes(bytes - savedBytes)
+                    + "（节省 " + (bytes == 0 ? 0 : savedBytes * 100 / bytes) + "%，编码 " + durationMillis + " ms）";
+            case COMPRESS_SKIPPED -> "压缩未减小体积，按原图上传：" + file;
+            case UPLOAD_STARTED -> "开始上传：" + file + "（发现至上传 " + latencyMillis + " ms）";
+            case UPLOADING -> "正在上传照片到智能体平台并鉴权：" + file;
+            case AUTHORIZED -> "上传完成，已通过验证：" + file + "（" + durationMillis + " ms）";
+            case RECOGNIZING -> "智能体平台正在进行人脸切图识别处理：" + file;
+            case COMPLETED -> "识别完毕，点检结果已提交PG报表数据库：" + file
+                    + "（首个事件 " + latencyMillis + " ms，总耗时 " + durationMillis + " ms，" + bytes + " 字节"
+                    + (severity == Severity.WARN ? "，未收到结束事件" : "") + "）";
+            case RESULT -> "识别结果：" + (detail.length() > RESULT_PREVIEW_CHARS
+                    ? detail.substring(0, RESULT_PREVIEW_CHARS) + "…" : detail);
+            case ARCHIVED -> "点检照片已归档：" + file;
+            case INTERRUPTED -> "已中断：" + file + "，下次启动时继续";
+            case FAILED -> "处理失败：" + file + "，" + detail;
+        };
+    }
+
+    private String suffix() {
+        return detail == null ? "" : detail;
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes >= 1 << 20) {
+            return String.format("%.1f MB", bytes / 1048576.0);
+        }
+        return String.format("%.0f KB", bytes / 1024.0);
+    }
+
+    @Override
+    public String toString() {
+        return render();
+    }
+}
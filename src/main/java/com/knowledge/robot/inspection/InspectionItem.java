@@ -0,0 +1,70 @@
+package com.knowledge.robot.inspection;
+
+import java.nio.file.Path;
+
+/**
+ * 单张点检照片在流水线各阶段之间传递的处理状态。
+ */
+final class InspectionItem {
+    private final Path source;
+    private final long appId;
+    private String chatId;
+    private final long size;
+    private final long discoveredNanos;
+    private long refId;
+    private String contentHash;
+    private byte[] payload;
+    private String uploadName;
+    private CompletionResult completion;
+
+    InspectionItem(Path source, long size, long appId, String chatId, long discoveredNanos) {
+        this.source = source;
+        this.size = size;
+        this.appId = appId;
+        this.chatId = chatId;
+        this.discoveredNanos = discoveredNanos;
+    }
+
+    Path source() { return source; }
+
+    String fileName() { return source.getFileName().toString(); }
+
+    /** 发现时的文件大小，与原文件名一起作为处理日志的键。 */
+    long size() { return size; }
+
+    long appId() { return appId; }
+
+    String chatId() { return chatId; }
+
+    /** 文件被扫描或监听事件发现时的 {@link System#nanoTime()}。 */
+    long discoveredNanos() { return discoveredNanos; }
+
+    long refId() { return refId; }
+
+    /** 复用相同内容此前的上传结果，识别必须沿用当时的 chatId。 */
+    void reuseUpload(long refId, String chatId) {
+        this.refId = refId;
+        this.chatId = chatId;
+    }
+
+    String contentHash() { return contentHash; }
+
+    void contentHash(String contentHash) { this.contentHash = contentHash; }
+
+    /** 压缩后待上传的数据；为 null 时上传原文件。 */
+    byte[] payload() { return payload; }
+
+    String uploadName() { return uploadName != null ? uploadName : fileName(); }
+
+    void payload(byte[] payload, String uploadName) {
+        this.payload = payload;
+        this.uploadName = uploadName;
+    }
+
+    /** 上传完成后释放内存中的压缩数据。 */
+    void releasePayload() { this.payload = null; }
+
+    CompletionResult completion() { return completion; }
+
+    void completion(CompletionResult completion) { this.completion = completion; }
+}
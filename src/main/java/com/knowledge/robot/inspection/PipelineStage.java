@@ -0,0 +1,181 @@
+package com.knowledge.robot.inspection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 流水线中的一个处理阶段：有界队列 + 固定数量的工作者。
+ * I/O 阶段使用虚拟线程；CPU 密集阶段使用同等数量的平台线程，避免长时间占住虚拟线程的载体线程。
+ * 队列写满时 {@link #submit} 会阻塞上游阶段，形成天然的背压。
+ * <p>
+ * 批量模式下，工作者取到第一个元素后在 {@code lingerMillis} 内继续收集，最多凑满 {@code maxBatch} 个再一起处理。
+ * 同一时刻只有一个工作者在凑批，避免多个工作者各拿一张导致批次被拆散；凑好的批次仍可并发处理。
+ * <p>
+ * {@link #close()} 之后不再接收新元素，工作者处理完手头的批次即退出，队列中剩余的元素保持原样不处理。
+ */
+final class PipelineStage<T> {
+
+    @FunctionalInterface
+    interface Worker<T> {
+        void process(T item) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface BatchWorker<T> {
+        void process(List<T> items) throws Exception;
+    }
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int parallelism;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final BatchWorker<T> worker;
+    private final BiConsumer<T, Exception> onError;
+    private final boolean cpuBound;
+    private static final long IDLE_POLL_MILLIS = 200;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final ReentrantLock batchLock = new ReentrantLock();
+    private volatile boolean open = true;
+
+    PipelineStage(String name, int capacity, int parallelism,
+                  Worker<T> worker, BiConsumer<T, Exception> onError) {
+        this(name, capacity, parallelism, worker, onError, false);
+    }
+
+    PipelineStage(String name, int capacity, int parallelism,
+                  Worker<T> worker, BiConsumer<T, Exception> onError, boolean cpuBound) {
+        this(name, capacity, parallelism, 1, 0, items -> worker.process(items.get(0)), onError, cpuBound);
+    }
+
+    PipelineStage(String name, int capacity, int parallelism, int maxBatch, long lingerMillis,
+                  BatchWorker<T> worker, BiConsumer<T, Exception> onError) {
+        this(name, capacity, parallelism, maxBatch, lingerMillis, worker, onError, false);
+    }
+
+    private PipelineStage(String name, int capacity, int parallelism, int maxBatch, long lingerMillis,
+                          BatchWorker<T> worker, BiConsumer<T, Exception> onError, boolean cpuBound) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.parallelism = Math.max(1, parallelism);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.worker = worker;
+        this.onError = onError;
+        this.cpuBound = cpuBound;
+    }
+
+    void start() {
+        ThreadFactory factory = cpuBound
+                ? Thread.ofPlatform().daemon().name("inspection-" + name + "-", 0).factory()
+                : Thread.ofVirtual().name("inspection-" + name + "-", 0).factory();
+        for (int i = 0; i < parallelism; i++) {
+            Thread t = factory.newThread(this::runLoop);
+            threads.add(t);
+            t.start();
+        }
+    }
+
+    /** 放入队列，队列满时阻塞；阶段已关闭（包括阻塞期间被关闭）时返回 false。 */
+    boolean submit(T item) throws InterruptedException {
+        while (open) {
+            if (queue.offer(item, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 停止接收新元素；工作者完成当前批次后退出，不中断正在进行的处理。 */
+    void close() {
+        open = false;
+    }
+
+    /** 等待工作者全部退出，最迟到 {@code deadlineNanos}（{@link System#nanoTime()} 时间）；全部退出时返回 true。 */
+    boolean awaitTermination(long deadlineNanos) throws InterruptedException {
+        for (Thread t : threads) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0 || !t.join(java.time.Duration.ofNanos(remaining))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void shutdownNow() {
+        open = false;
+        queue.clear();
+        threads.forEach(Thread::interrupt);
+    }
+
+    private void runLoop() {
+        while (open) {
+            List<T> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                worker.process(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                for (T item : batch) {
+                    onError.accept(item, e);
+                }
+            }
+        }
+    }
+
+    private List<T> nextBatch() throws InterruptedException {
+        List<T> batch = new ArrayList<>(maxBatch);
+        if (maxBatch == 1) {
+            T item = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                batch.add(item);
+            }
+            return batch;
+        }
+        if (!batchLock.tryLock(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            return batch;
+        }
+        try {
+            collect(batch);
+        } finally {
+            batchLock.unlock();
+        }
+        return batch;
+    }
+
+    private void collect(List<T> batch) throws InterruptedException {
+        T first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatch || remaining <= 0) {
+                break;
+            }
+            T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.knowledge.robot.inspection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 已处理图片的持久化日志，替代每轮扫描 his/ 目录重建文件名集合。
+ * <ul>
+ *   <li>{@code processed.log}：只追加的文本记录（原文件名、大小、归档名、归档时间），是唯一事实来源；</li>
+ *   <li>{@code processed.idx}：内存映射的开放寻址哈希表，每个槽位存放 (原文件名, 大小) 的 64 位指纹，
+ *       启动时直接映射即可使用，不需要把文件名读入堆。</li>
+ * </ul>
+ * 以“原文件名 + 大小”判定是否处理过：归档时会重置修改时间，只有大小能从 his/ 中还原。
+ */
+final class ProcessedJournal implements AutoCloseable {
+    static final String INDEX_DIR = ".index";
+    private static final String LOG_FILE = "processed.log";
+    private static final String IDX_FILE = "processed.idx";
+
+    private static final int MAGIC = 0x504A4958; // "PJIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int MIN_CAPACITY = 1 << 12;
+    private static final Pattern ARCHIVE_NAME = Pattern.compile("\\d{8}_\\d{6}_(.+)");
+
+    private final Path historyDir;
+    private final Path logFile;
+    private final Path idxFile;
+    private FileChannel logChannel;
+    private FileChannel idxChannel;
+    private MappedByteBuffer idx;
+    private int capacity;
+    private int count;
+
+    private ProcessedJournal(Path historyDir) {
+        this.historyDir = historyDir;
+        Path dir = historyDir.resolve(INDEX_DIR);
+        this.logFile = dir.resolve(LOG_FILE);
+        this.idxFile = dir.resolve(IDX_FILE);
+    }
+
+    /**
+     * 打开（必要时重建）指定归档目录的处理日志：
+     * 日志缺失时从 his/ 现有归档重建；索引缺失、损坏或落后于日志时从日志重放。
+     */
+    static ProcessedJournal open(Path historyDir) throws IOException {
+        ProcessedJournal journal = new ProcessedJournal(historyDir);
+        journal.load();
+        return journal;
+    }
+
+    /** 归档文件名 {@code yyyyMMdd_HHmmss_原名} 还原为原文件名；不符合格式时原样返回。 */
+    static String originalName(String archivedName) {
+        Matcher m = ARCHIVE_NAME.matcher(archivedName);
+        return m.matches() ? m.group(1) : archivedName;
+    }
+
+    /** @throws IllegalStateException 已关闭（停止超时后仍在运行的线程可能走到这里） */
+    synchronized boolean contains(String originalName, long size) {
+        if (idx == null) {
+            throw new IllegalStateException("处理日志已关闭");
+        }
+        long key = fingerprint(originalName, size);
+        int mask = capacity - 1;
+        for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+            long v = idx.getLong(slotOffset(slot));
+            if (v == 0) {
+                return false;
+            }
+            if (v == key) {
+                return true;
+            }
+        }
+    }
+
+    synchronized void record(String originalName, long size, String archivedName) throws IOException {
+        if (logChannel == null || idx == null) {
+            throw new IOException("处理日志已关闭");
+        }
+        String line = escape(originalName) + '\t' + size + '\t' + escape(archivedName) + '\t'
+                + System.currentTimeMillis() + '\n';
+        logChannel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+        insert(fingerprint(originalName, size));
+        idx.putLong(16, logChannel.size());
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (idx != null) {
+                idx.force();
+            }
+            if (idxChannel != null) {
+                idxChannel.close();
+            }
+            if (logChannel != null) {
+                logChannel.close();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            idx = null;
+            idxChannel = null;
+            logChannel = null;
+        }
+    }
+
+    // ================= 加载与重建 =================
+
+    private void load() throws IOException {
+        Files.createDirectories(logFile.getParent());
+        boolean logRebuilt = false;
+        if (!Files.exists(logFile) || (Files.size(logFile) == 0 && hasArchivedFiles())) {
+            rebuildLogFromArchive();
+            logRebuilt = true;
+        }
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        terminateTornTail();
+        long logLength = logChannel.size();
+        if (logRebuilt || !mapExistingIndex(logLength)) {
+            initIndex(MIN_CAPACITY);
+        }
+        long covered = idx.getLong(16);
+        if (covered < logLength) {
+            replay(covered);
+            idx.putLong(16, logLength);
+        }
+    }
+
+    /** 上次写到一半崩溃时补一个换行，避免残缺记录与下一条记录粘连。 */
+    private void terminateTornTail() throws IOException {
+        long size = logChannel.size();
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            ch.read(last, size - 1);
+        }
+        if (last.get(0) != '\n') {
+            logChannel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+        }
+    }
+
+    private boolean mapExistingIndex(long logLength) throws IOException {
+        if (!Files.exists(idxFile) || Files.size(idxFile) < HEADER_BYTES) {
+            return false;
+        }
+        idxChannel = FileChannel.open(idxFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        idx = idxChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        int cap = idx.getInt(8);
+        boolean valid = idx.getInt(0) == MAGIC
+                && idx.getInt(4) == VERSION
+                && cap >= MIN_CAPACITY && Integer.bitCount(cap) == 1
+                && idxChannel.size() >= HEADER_BYTES + (long) cap * Long.BYTES
+                && idx.getLong(16) <= logLength;
+        if (!valid) {
+            return false;
+        }
+        idx = idxChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) cap * Long.BYTES);
+        capacity = cap;
+        count = idx.getInt(12);
+        return true;
+    }
+
+    /**
+     * 在原索引文件上就地扩展并清空为指定容量，再由调用方重放。不走“临时文件 + 重命名”，
+     * 因为 Windows 下仍被映射的文件无法被替换。重建期间已覆盖偏移置 0，中途崩溃时下次启动会全量重放。
+     */
+    private void initIndex(int newCapacity) throws IOException {
+        if (idxChannel == null) {
+            idxChannel = FileChannel.open(idxFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        long bytes = HEADER_BYTES + (long) newCapacity * Long.BYTES;
+        idx = idxChannel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        idx.putLong(16, 0L);
+        for (int off = HEADER_BYTES; off < bytes; off += Long.BYTES) {
+            idx.putLong(off, 0L);
+        }
+        idx.putInt(0, MAGIC);
+        idx.putInt(4, VERSION);
+        idx.putInt(8, newCapacity);
+        idx.putInt(12, 0);
+        capacity = newCapacity;
+        count = 0;
+    }
+
+    private void replay(long fromOffset) throws IOException {
+        try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(
+                     java.nio.channels.Channels.newReader(ch.position(fromOffset), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length < 2) {
+                    continue;
+                }
+                try {
+                    insert(fingerprint(unescape(parts[0]), Long.parseLong(parts[1])));
+                } catch (NumberFormatException ignored) {
+                    // 截断的尾部记录，跳过
+                }
+            }
+        }
+    }
+
+    private boolean hasArchivedFiles() throws IOException {
+        return !ArchiveLayout.files(historyDir).isEmpty();
+    }
+
+    private void rebuildLogFromArchive() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Path p : ArchiveLayout.files(historyDir)) {
+            String archived = p.getFileName().toString();
+            sb.append(escape(originalName(archived))).append('\t')
+                    .append(Files.size(p)).append('\t')
+                    .append(escape(archived)).append('\t')
+                    .append(Files.getLastModifiedTime(p).toMillis()).append('\n');
+        }
+        Files.writeString(logFile, sb, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    // ================= 哈希表 =================
+
+    private void insert(long key) throws IOException {
+        if ((count + 1) * 2L > capacity) {
+            grow();
+        }
+        int mask = capacity - 1;
+        for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+            int off = slotOffset(slot);
+            long v = idx.getLong(off);
+            if (v == key) {
+                return;
+            }
+            if (v == 0) {
+                idx.putLong(off, key);
+                count++;
+                idx.putInt(12, count);
+                return;
+            }
+        }
+    }
+
+    private void grow() throws IOException {
+        long[] keys = new long[count];
+        int n = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long v = idx.getLong(slotOffset(slot));
+            if (v != 0) {
+                keys[n++] = v;
+            }
+        }
+        long covered = idx.getLong(16);
+        initIndex(capacity * 2);
+        for (int i = 0; i < n; i++) {
+            insert(keys[i]);
+        }
+        idx.putLong(16, covered);
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_BYTES + slot * Long.BYTES;
+    }
+
+    /** FNV-1a 文件名 + 大小，再做一次 splitmix64 混洗；0 保留为空槽。 */
+    private static long fingerprint(String name, long size) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= size;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return h == 0 ? 1 : h;
+    }
+
+    static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    static String unescape(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
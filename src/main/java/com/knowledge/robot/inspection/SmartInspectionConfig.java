@@ -5,6 +5,23 @@ public record SmartInspectionConfig(
         long intervalSeconds,
         String token,
         String uploadUrl,
-        String completionUrl
+        String completionUrl,
+        int uploadWorkers,
+        int completionWorkers,
+        int queueCapacity,
+        boolean watchFolder,
+        long watchSettleMillis,
+        long watchReconcileSeconds,
+        int uploadCacheMaxEntries,
+        long uploadCacheTtlHours,
+        boolean downscaleEnabled,
+        int downscaleMaxEdge,
+        float downscaleQuality,
+        int batchSize,
+        long batchLingerMillis,
+        long stopDrainSeconds,
+        int compactAfterDays,
+        int retentionDays,
+        long compactMaxBytesPerSecond
 ) {
 }
@@ -3,7 +3,22 @@ package com.knowledge.robot.inspection;
 public interface SmartInspectionLogger {
     void log(String message);
 
+    /**
+     * 结构化事件。默认渲染成文本交给 {@link #log(String)}；
+     * 需要按类型着色、计数的实现可覆盖本方法，在显示时再调用 {@link InspectionEvent#render()}。
+     */
+    default void event(InspectionEvent event) {
+        log(event.render());
+    }
+
     default void historyChanged(java.nio.file.Path historyDir) {
         // 可选实现：在处理完成后刷新历史记录
     }
+
+    /**
+     * 新归档了一张照片。默认按整体变化处理；历史面板可覆盖本方法，只把这一条并入表格，不必重新读取。
+     */
+    default void historyChanged(java.nio.file.Path historyDir, HistoryIndex.HistoryRecord record) {
+        historyChanged(historyDir);
+    }
 }
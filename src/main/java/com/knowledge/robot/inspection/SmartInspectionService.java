@@ -1,42 +1,92 @@
 package com.knowledge.robot.inspection;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knowledge.robot.http.AdaptiveLimiter;
+import com.knowledge.robot.http.CallMetrics;
+import com.knowledge.robot.http.ChatDeltaParser;
+import com.knowledge.robot.http.HttpTransport;
+import com.knowledge.robot.http.SseDecoder;
+import com.knowledge.robot.inspection.InspectionEvent.Severity;
+import com.knowledge.robot.inspection.InspectionEvent.Stage;
+import com.knowledge.robot.inspection.InspectionEvent.Type;
 import okhttp3.*;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class SmartInspectionService {
+    private static final int CPU_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
     private final ObjectMapper mapper = new ObjectMapper();
     private final SmartInspectionLogger logger;
-    private final OkHttpClient httpClient = buildClient();
+    private static final String UPLOAD_LIMITER = "点检上传";
+    private static final String COMPLETION_LIMITER = "点检识别";
+    private static final long LIMITER_LOG_SECONDS = 30;
+    private static final long COMPACT_INITIAL_DELAY_SECONDS = 60;
+    private static final long COMPACT_INTERVAL_HOURS = 6;
+
+    private final OkHttpClient httpClient = HttpTransport.shared().client();
+    private final AdaptiveLimiter uploadLimiter = HttpTransport.shared().limiter(UPLOAD_LIMITER);
+    private final AdaptiveLimiter completionLimiter = HttpTransport.shared().limiter(COMPLETION_LIMITER);
+    private final CallMetrics uploadMetrics = HttpTransport.shared().metrics(UPLOAD_LIMITER);
+    private final CallMetrics completionMetrics = HttpTransport.shared().metrics(COMPLETION_LIMITER);
+    private final Map<String, AdaptiveLimiter.Snapshot> lastLoggedLimits = new ConcurrentHashMap<>();
 
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread t = new Thread(r, "smart-inspection");
         t.setDaemon(true);
         return t;
     });
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().priority(Thread.MIN_PRIORITY).name("history-compactor").factory());
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final AtomicBoolean processing = new AtomicBoolean(false);
+    // 已进入流水线但尚未归档的文件，避免下一轮扫描重复入队
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    private final Object archiveLock = new Object();
+    // 监听模式下：等待写入稳定的文件及其首次被感知的时间
+    private final Map<Path, ScheduledFuture<?>> settling = new ConcurrentHashMap<>();
+    private final Map<Path, Long> firstSeenNanos = new ConcurrentHashMap<>();
+    private final AtomicLong latencySamples = new AtomicLong();
+    private final AtomicLong latencyTotalNanos = new AtomicLong();
+    private final AtomicLong latencyMaxNanos = new AtomicLong();
+    private final AtomicLong latencyLastNanos = new AtomicLong();
     private SmartInspectionConfig config;
+    private FolderWatcher watcher;
+    private ProcessedJournal journal;
+    private UploadCache uploadCache;
+    private WorkQueueLog workQueue;
+    private Path historyDir;
+    private ImageTransformer transformer;
+    private ArchiveCompactor compactor;
+    private PipelineStage<InspectionItem> prepareStage;
+    private PipelineStage<InspectionItem> uploadStage;
+    private PipelineStage<InspectionBatch> completionStage;
+    private PipelineStage<InspectionItem> archiveStage;
 
     public SmartInspectionService(SmartInspectionLogger logger) {
         this.logger = Objects.requireNonNull(logger);
@@ -45,167 +95,641 @@ public class SmartInspectionService {
     public void start(SmartInspectionConfig cfg) {
         this.config = cfg;
         if (!running.compareAndSet(false, true)) {
-            logger.log("智能点检已在运行中");
+            note(Stage.LIFECYCLE, Severity.WARN, "智能点检已在运行中");
             return;
         }
-        logger.log("启动智能点检任务，间隔 " + cfg.intervalSeconds() + " 秒，目录：" + cfg.folder());
-        scheduler.scheduleWithFixedDelay(this::scanAndProcess, 0, cfg.intervalSeconds(), TimeUnit.SECONDS);
+        this.historyDir = Path.of(cfg.folder()).resolve("his");
+        buildPipeline(cfg);
+        long scanSeconds = cfg.intervalSeconds();
+        if (cfg.watchFolder() && startWatcher(Path.of(cfg.folder()))) {
+            scanSeconds = Math.max(cfg.intervalSeconds(), cfg.watchReconcileSeconds());
+            note(Stage.LIFECYCLE, Severity.NOTICE, "启动智能点检任务（实时监听），对账扫描间隔 " + scanSeconds + " 秒，目录：" + cfg.folder());
+        } else {
+            note(Stage.LIFECYCLE, Severity.NOTICE, "启动智能点检任务，间隔 " + cfg.intervalSeconds() + " 秒，目录：" + cfg.folder());
+        }
+        note(Stage.LIFECYCLE, Severity.INFO, "流水线并发：预处理 " + CPU_WORKERS + "，上传 " + cfg.uploadWorkers() + "，识别 " + cfg.completionWorkers()
+                + "，队列容量 " + cfg.queueCapacity());
+        if (cfg.batchSize() > 1) {
+            note(Stage.LIFECYCLE, Severity.INFO, "批量上传已开启：每批最多 " + cfg.batchSize() + " 张，等待 " + cfg.batchLingerMillis() + " ms 凑批");
+        }
+        if (transformer != null) {
+            note(Stage.LIFECYCLE, Severity.INFO, "上传前压缩已开启：最长边 " + cfg.downscaleMaxEdge() + " 像素，JPEG 质量 " + cfg.downscaleQuality());
+        }
+        scheduler.execute(this::migrateArchive);
+        scheduler.execute(this::resumePending);
+        scheduler.scheduleWithFixedDelay(this::scanAndProcess, 0, scanSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::logLimiters, LIMITER_LOG_SECONDS, LIMITER_LOG_SECONDS, TimeUnit.SECONDS);
+        startCompactor(cfg);
+    }
+
+    /** 归档压缩与过期清理：启动后稍等再首次执行，之后每隔几小时一次；流水线忙时自动让路。 */
+    private void startCompactor(SmartInspectionConfig cfg) {
+        compactor = new ArchiveCompactor(historyDir, cfg.compactAfterDays(), cfg.retentionDays(),
+                cfg.compactMaxBytesPerSecond(), () -> !inFlight.isEmpty(), archiveLock, logger);
+        if (!compactor.enabled()) {
+            return;
+        }
+        note(Stage.STORAGE, Severity.INFO, "历史归档整理已开启："
+                + (cfg.compactAfterDays() > 0 ? cfg.compactAfterDays() + " 天前的照片打包压缩" : "不打包")
+                + "，" + (cfg.retentionDays() > 0 ? "保留 " + cfg.retentionDays() + " 天" : "永久保留"));
+        maintenance.scheduleWithFixedDelay(compactor, COMPACT_INITIAL_DELAY_SECONDS,
+                TimeUnit.HOURS.toSeconds(COMPACT_INTERVAL_HOURS), TimeUnit.SECONDS);
+    }
+
+    /** 上限或拒绝数变化时记录一次自适应限流状态。 */
+    private void logLimiters() {
+        for (AdaptiveLimiter limiter : List.of(uploadLimiter, completionLimiter)) {
+            AdaptiveLimiter.Snapshot s = limiter.snapshot();
+            AdaptiveLimiter.Snapshot prev = lastLoggedLimits.put(s.name(), s);
+            if (prev != null && prev.limit() == s.limit() && prev.rejected() == s.rejected()) {
+                continue;
+            }
+            note(Stage.TRANSPORT, s.rejected() > (prev != null ? prev.rejected() : 0) ? Severity.WARN : Severity.INFO,
+                    s.name() + "并发上限 " + s.limit() + "，在途 " + s.inFlight() + "，延迟 " + s.latencyMillis()
+                    + " ms（基线 " + s.baselineMillis() + " ms），失败 " + s.dropped() + "，拒绝 " + s.rejected());
+        }
     }
 
+    /**
+     * 停止接收新照片，等待正在上传/识别/归档的照片推进到下一阶段（最多 {@code stopDrainSeconds} 秒）后再退出；
+     * 队列中尚未开始的照片保留在工作队列日志中，下次启动从最后完成的阶段继续。调用方应避免在 EDT 上调用。
+     */
     public void stop() {
         running.set(false);
+        if (watcher != null) {
+            watcher.close();
+        }
+        settling.clear();
+        firstSeenNanos.clear();
         scheduler.shutdownNow();
-        logger.log("智能点检已停止");
+        if (compactor != null) {
+            compactor.stop();
+        }
+        maintenance.shutdownNow();
+        List<PipelineStage<?>> stages = stages();
+        stages.forEach(PipelineStage::close);
+        if (!stages.isEmpty()) {
+            note(Stage.LIFECYCLE, Severity.NOTICE, "正在等待进行中的照片处理完当前步骤…");
+        }
+        boolean drained = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config != null ? config.stopDrainSeconds() : 0);
+        try {
+            for (PipelineStage<?> stage : stages) {
+                drained &= stage.awaitTermination(deadline);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained = false;
+        }
+        if (!drained) {
+            note(Stage.LIFECYCLE, Severity.WARN, "等待超时，强制停止仍在进行的请求");
+            stages.forEach(PipelineStage::shutdownNow);
+        }
+        inFlight.clear();
+        synchronized (this) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            if (workQueue != null) {
+                int left = workQueue.pending().size();
+                if (left > 0) {
+                    note(Stage.STORAGE, Severity.WARN, "尚有 " + left + " 张照片未处理完，下次启动时继续");
+                }
+                workQueue.close();
+                workQueue = null;
+            }
+        }
+        note(Stage.LIFECYCLE, Severity.NOTICE, "智能点检已停止");
     }
 
     public boolean isRunning() {
         return running.get();
     }
 
+    /** 从文件被发现（监听事件或扫描）到开始上传的等待时间统计。 */
+    public IngestLatency ingestLatency() {
+        long samples = latencySamples.get();
+        double avg = samples == 0 ? 0 : latencyTotalNanos.get() / 1_000_000.0 / samples;
+        return new IngestLatency(samples,
+                TimeUnit.NANOSECONDS.toMillis(latencyLastNanos.get()),
+                avg,
+                TimeUnit.NANOSECONDS.toMillis(latencyMaxNanos.get()));
+    }
+
+    public record IngestLatency(long samples, long lastMillis, double averageMillis, long maxMillis) {
+    }
+
+    private boolean startWatcher(Path folder) {
+        try {
+            Files.createDirectories(folder);
+            watcher = new FolderWatcher(folder, this::onWatchEvent, this::onWatchOverflow);
+            watcher.start();
+            return true;
+        } catch (IOException | UnsupportedOperationException ex) {
+            note(Stage.DISCOVER, Severity.WARN, "目录监听启动失败，改为轮询扫描：" + ex.getMessage());
+            return false;
+        }
+    }
+
+    /** 同一文件连续的新建/修改事件合并，静默 watchSettleMillis 后认为写入完成再入队。 */
+    private void onWatchEvent(Path file, long observedNanos) {
+        if (!running.get() || !isImageFile(file)) {
+            return;
+        }
+        firstSeenNanos.putIfAbsent(file, observedNanos);
+        try {
+            settling.compute(file, (p, previous) -> {
+                if (previous != null) {
+                    previous.cancel(false);
+                }
+                return scheduler.schedule(() -> onFileSettled(p),
+                        config.watchSettleMillis(), TimeUnit.MILLISECONDS);
+            });
+        } catch (RejectedExecutionException ignored) {
+            // 已停止
+        }
+    }
+
+    private void onWatchOverflow() {
+        if (!running.get()) {
+            return;
+        }
+        note(Stage.DISCOVER, Severity.WARN, "目录监听事件溢出，执行一次对账扫描");
+        try {
+            scheduler.execute(this::scanAndProcess);
+        } catch (RejectedExecutionException ignored) {
+            // 已停止
+        }
+    }
+
+    private void onFileSettled(Path file) {
+        settling.remove(file);
+        Long seen = firstSeenNanos.remove(file);
+        if (!running.get() || !Files.isRegularFile(file) || inFlight.contains(file)) {
+            return;
+        }
+        try {
+            if (journal().contains(file.getFileName().toString(), Files.size(file))) {
+                return;
+            }
+            enqueue(file, seen != null ? seen : System.nanoTime());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            note(Stage.DISCOVER, Severity.ERROR, "监听处理异常：" + ex.getMessage());
+        }
+    }
+
+    /**
+     * 扫描 → 预处理（内容哈希、缓存查询、可选压缩）→ 上传 → 识别 → 归档 流水线，阶段之间用有界队列衔接。
+     * 预处理为 CPU 密集型，按核数使用平台线程；上传与识别按配置并发；归档单线程执行以保证命名不冲突。
+     */
+    private void buildPipeline(SmartInspectionConfig cfg) {
+        int capacity = cfg.queueCapacity();
+        transformer = cfg.downscaleEnabled()
+                ? new ImageTransformer(cfg.downscaleMaxEdge(), cfg.downscaleQuality())
+                : null;
+        prepareStage = new PipelineStage<>("prepare", capacity, CPU_WORKERS,
+                this::prepareStep, this::onItemFailed, true);
+        uploadStage = new PipelineStage<>("upload", capacity, cfg.uploadWorkers(),
+                cfg.batchSize(), cfg.batchLingerMillis(), this::uploadStep, this::onItemFailed);
+        completionStage = new PipelineStage<>("completion", capacity, cfg.completionWorkers(),
+                this::completionStep, this::onBatchFailed);
+        archiveStage = new PipelineStage<>("archive", capacity, 1,
+                this::archiveStep, this::onItemFailed);
+        for (PipelineStage<?> stage : stages()) {
+            stage.start();
+        }
+    }
+
+    private List<PipelineStage<?>> stages() {
+        if (prepareStage == null) {
+            return List.of();
+        }
+        return List.of(prepareStage, uploadStage, completionStage, archiveStage);
+    }
+
     private void scanAndProcess() {
         if (!running.get()) {
             return;
         }
         if (!processing.compareAndSet(false, true)) {
-            logger.log("上一轮处理尚未完成，跳过本轮");
+            note(Stage.DISCOVER, Severity.INFO, "上一轮处理尚未完成，跳过本轮");
             return;
         }
         try {
             Path folder = Path.of(config.folder());
             if (!Files.exists(folder)) {
-                logger.log("目录不存在，自动创建：" + folder);
+                note(Stage.DISCOVER, Severity.WARN, "目录不存在，自动创建：" + folder);
                 Files.createDirectories(folder);
             }
-            Path historyDir = folder.resolve("his");
             if (!Files.exists(historyDir)) {
                 Files.createDirectories(historyDir);
             }
             List<Path> images = listImages(folder);
             if (images.isEmpty()) {
-                logger.log("本轮扫描未发现图片文件，等待下次轮询。");
+                note(Stage.DISCOVER, Severity.INFO, "本轮扫描未发现图片文件，等待下次轮询。");
                 return;
             }
-            Set<String> processedNames = loadHistoryOriginalNames(historyDir);
-            List<Path> pendingImages = excludeProcessed(images, processedNames);
+            ProcessedJournal processed = journal();
+            List<Path> pendingImages = new ArrayList<>();
+            for (Path img : images) {
+                if (!inFlight.contains(img) && !processed.contains(img.getFileName().toString(), Files.size(img))) {
+                    pendingImages.add(img);
+                }
+            }
             if (pendingImages.isEmpty()) {
                 return;
             }
-            logger.log("发现图片数量：" + pendingImages.size());
+            note(Stage.DISCOVER, Severity.INFO, "发现图片数量：" + pendingImages.size());
             for (Path img : pendingImages) {
                 if (!running.get()) {
                     break;
                 }
-                handleOneImage(img.toFile(), historyDir);
-                processedNames.add(img.getFileName().toString());
+                Long seen = firstSeenNanos.get(img);
+                enqueue(img, seen != null ? seen : System.nanoTime());
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         } catch (Exception ex) {
-            logger.log("扫描处理异常：" + ex.getMessage());
+            note(Stage.DISCOVER, Severity.ERROR, "扫描处理异常：" + ex.getMessage());
         } finally {
             processing.set(false);
         }
     }
 
+    /**
+     * 处理日志在调度线程上首次使用时打开，避免首次从 his/ 重建时阻塞 EDT。
+     * 与 {@link #stop} 中的关闭同在实例锁内：停止后不会再拿到已关闭的实例，停止超时后仍在运行的线程也不会重新打开。
+     */
+    private synchronized ProcessedJournal journal() throws IOException {
+        ProcessedJournal j = journal;
+        if (j == null) {
+            if (!running.get()) {
+                throw new IOException("智能点检已停止");
+            }
+            Files.createDirectories(historyDir);
+            j = ProcessedJournal.open(historyDir);
+            note(Stage.STORAGE, Severity.INFO, "已加载处理记录：" + j.size() + " 条");
+            journal = j;
+        }
+        return j;
+    }
+
+    private synchronized WorkQueueLog workQueue() throws IOException {
+        if (workQueue == null) {
+            Files.createDirectories(historyDir);
+            workQueue = WorkQueueLog.open(historyDir);
+        }
+        return workQueue;
+    }
+
+    /** 阶段推进写入工作队列日志；写入失败只影响重启后的续传，不中断当前处理。 */
+    private void recordStage(WorkQueueLog.Stage stage, InspectionItem item) {
+        try {
+            workQueue().record(stage, item);
+        } catch (IOException e) {
+            note(Stage.STORAGE, Severity.ERROR, "工作队列日志写入失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 一次性把旧版平铺在 his/ 下的归档搬入 his/yyyy/MM/dd 分区，并改写历史索引中的路径；
+     * 处理记录只保存归档文件名，缩略图缓存按文件名区分，均不受影响。
+     */
+    private void migrateArchive() {
+        synchronized (archiveLock) {
+            try {
+                if (ArchiveLayout.migrated(historyDir)) {
+                    return;
+                }
+                int moved = ArchiveLayout.migrateFlat(historyDir);
+                HistoryIndex.forHistory(historyDir).relocateFlat();
+                ArchiveLayout.markMigrated(historyDir);
+                if (moved > 0) {
+                    note(Stage.STORAGE, Severity.NOTICE, "已将 " + moved + " 张历史照片迁移到按日期分区的目录");
+                    logger.historyChanged(historyDir);
+                }
+            } catch (IOException ex) {
+                note(Stage.STORAGE, Severity.ERROR, "历史目录迁移失败，下次启动时重试：" + ex.getMessage());
+            }
+        }
+    }
+
+    /** 启动时清理已不存在的未完成条目，其余照片由扫描发现后从最后完成的阶段继续。 */
+    private void resumePending() {
+        try {
+            WorkQueueLog wq = workQueue();
+            List<WorkQueueLog.Entry> entries = wq.pending();
+            if (entries.isEmpty()) {
+                return;
+            }
+            Path folder = Path.of(config.folder());
+            int resumable = 0;
+            for (WorkQueueLog.Entry e : entries) {
+                Path img = folder.resolve(e.name());
+                if (Files.isRegularFile(img) && Files.size(img) == e.size()) {
+                    resumable++;
+                } else {
+                    wq.drop(e);
+                }
+            }
+            if (resumable > 0) {
+                note(Stage.STORAGE, Severity.NOTICE, "发现上次未完成的照片 " + resumable + " 张，将从最后完成的阶段继续");
+            }
+        } catch (IOException ex) {
+            note(Stage.STORAGE, Severity.ERROR, "读取工作队列日志失败：" + ex.getMessage());
+        }
+    }
+
+    private synchronized UploadCache uploadCache() throws IOException {
+        if (uploadCache == null) {
+            uploadCache = UploadCache.open(historyDir, config.uploadCacheMaxEntries(), config.uploadCacheTtlHours());
+        }
+        return uploadCache;
+    }
+
+    private void enqueue(Path img, long discoveredNanos) throws InterruptedException, IOException {
+        long size = Files.size(img);
+        WorkQueueLog.Entry resume = workQueue().pending(img.getFileName().toString(), size);
+        InspectionItem item = resume != null
+                ? new InspectionItem(img, size, resume.appId(), resume.chatId(), discoveredNanos)
+                : new InspectionItem(img, size, generateAppId(), generateChatId(), discoveredNanos);
+        if (!inFlight.add(img)) {
+            return;
+        }
+        boolean submitted;
+        if (resume != null && resume.stage() != WorkQueueLog.Stage.DISCOVERED) {
+            item.reuseUpload(resume.refId(), resume.chatId());
+            item.contentHash(resume.contentHash());
+            if (resume.stage() == WorkQueueLog.Stage.COMPLETED) {
+                logger.event(InspectionEvent.of(Type.RESUMED, Stage.ARCHIVE, Severity.INFO, item.fileName(), item.chatId()));
+                submitted = archiveStage.submit(item);
+            } else {
+                logger.event(InspectionEvent.of(Type.RESUMED, Stage.COMPLETION, Severity.INFO, item.fileName(), item.chatId()));
+                submitted = completionStage.submit(new InspectionBatch(List.of(item)));
+            }
+        } else {
+            logger.event(InspectionEvent.of(Type.DISCOVERED, Stage.DISCOVER, Severity.INFO, item.fileName(), item.chatId()));
+            if (resume == null) {
+                recordStage(WorkQueueLog.Stage.DISCOVERED, item);
+            }
+            submitted = prepareStage.submit(item);
+        }
+        if (!submitted) {
+            inFlight.remove(img);
+        }
+    }
+
     private List<Path> listImages(Path folder) throws IOException {
         try (Stream<Path> stream = Files.list(folder)) {
             return stream
                     .filter(Files::isRegularFile)
-                    .filter(p -> {
-                        String name = p.getFileName().toString().toLowerCase();
-                        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg")
-                                || name.endsWith(".bmp") || name.endsWith(".gif");
-                    })
+                    .filter(SmartInspectionService::isImageFile)
                     .sorted(Comparator.comparing(Path::toString))
                     .collect(Collectors.toCollection(ArrayList::new));
         }
     }
 
-    private Set<String> loadHistoryOriginalNames(Path historyDir) throws IOException {
-        try (Stream<Path> stream = Files.list(historyDir)) {
-            return stream
-                    .filter(Files::isRegularFile)
-                    .map(this::extractOriginalName)
-                    .collect(Collectors.toSet());
+    private static boolean isImageFile(Path p) {
+        String name = p.getFileName().toString().toLowerCase();
+        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg")
+                || name.endsWith(".bmp") || name.endsWith(".gif");
+    }
+
+    private void prepareStep(InspectionItem item) throws Exception {
+        UploadCache cache = uploadCache();
+        item.contentHash(UploadCache.sha256(item.source()));
+        UploadCache.Entry cached = cache.lookup(item.contentHash());
+        String cacheStats = "（缓存命中 " + cache.hits() + " / 未命中 " + cache.misses() + "）";
+        if (cached != null && cached.completed()) {
+            logger.event(InspectionEvent.of(Type.DUPLICATE_CONTENT, Stage.PREPARE, Severity.SUCCESS,
+                    item.fileName(), item.chatId()).withDetail(cacheStats));
+            recordStage(WorkQueueLog.Stage.COMPLETED, item);
+            archiveStage.submit(item);
+            return;
+        }
+        if (cached != null) {
+            item.reuseUpload(cached.refId(), cached.chatId());
+            logger.event(InspectionEvent.of(Type.UPLOAD_CACHE_HIT, Stage.PREPARE, Severity.INFO,
+                    item.fileName(), item.chatId()).withDetail(cacheStats));
+            recordStage(WorkQueueLog.Stage.UPLOADED, item);
+            completionStage.submit(new InspectionBatch(List.of(item)));
+            return;
+        }
+        logger.event(InspectionEvent.of(Type.UPLOAD_CACHE_MISS, Stage.PREPARE, Severity.INFO,
+                item.fileName(), item.chatId()).withDetail(cacheStats));
+        if (transformer != null) {
+            ImageTransformer.Result r = transformer.transform(item.source());
+            if (r != null) {
+                item.payload(r.bytes(), r.uploadName());
+                logger.event(InspectionEvent.compressed(item.fileName(), r.originalBytes(), r.savedBytes(),
+                        TimeUnit.NANOSECONDS.toMillis(r.encodeNanos())));
+            } else {
+                logger.event(InspectionEvent.of(Type.COMPRESS_SKIPPED, Stage.PREPARE, Severity.INFO,
+                        item.fileName(), item.chatId()));
+            }
         }
+        uploadStage.submit(item);
     }
 
-    private List<Path> excludeProcessed(List<Path> images, Set<String> processedNames) {
-        return images.stream()
-                .filter(p -> !processedNames.contains(p.getFileName().toString()))
-                .collect(Collectors.toCollection(ArrayList::new));
+    /** 一批照片合并为一次 multipart 上传，返回的图片 ID 逐一对应回各自文件后整批提交识别。 */
+    private void uploadStep(List<InspectionItem> items) throws Exception {
+        InspectionBatch batch = new InspectionBatch(items);
+        for (InspectionItem item : items) {
+            long waitNanos = System.nanoTime() - item.discoveredNanos();
+            recordIngestLatency(waitNanos);
+            logger.event(InspectionEvent.uploadStarted(item.fileName(), item.chatId(),
+                    TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+        }
+        List<Long> refIds = uploadFiles(batch);
+        UploadCache cache = uploadCache();
+        for (int i = 0; i < items.size(); i++) {
+            InspectionItem item = items.get(i);
+            item.reuseUpload(refIds.get(i), batch.chatId());
+            item.releasePayload();
+            cache.putUploaded(item.contentHash(), item.refId(), item.chatId());
+            recordStage(WorkQueueLog.Stage.UPLOADED, item);
+        }
+        completionStage.submit(batch);
     }
 
-    private String extractOriginalName(Path historyFile) {
-        String name = historyFile.getFileName().toString();
-        if (name.matches("\\d{8}_\\d{6}_.+")) {
-            return name.substring(16);
+    private void completionStep(InspectionBatch batch) throws Exception {
+        CompletionResult result = callCompletion(batch);
+        UploadCache cache = uploadCache();
+        for (InspectionItem item : batch.items()) {
+            item.completion(result);
+            cache.markCompleted(item.contentHash(), item.refId(), item.chatId(), result.content());
+            recordStage(WorkQueueLog.Stage.COMPLETED, item);
+        }
+        logger.event(InspectionEvent.completed(batch.describe(), batch.chatId(), result));
+        String summary = result.content().strip();
+        if (!summary.isEmpty()) {
+            logger.event(InspectionEvent.of(Type.RESULT, Stage.COMPLETION, Severity.INFO,
+                    batch.describe(), batch.chatId()).withDetail(summary));
+        }
+        for (InspectionItem item : batch.items()) {
+            archiveStage.submit(item);
         }
-        return name;
     }
 
-    private void handleOneImage(File file, Path historyDir) {
-        logger.log("发现点检照片：" + file.getName());
-        long appId = generateAppId();
-        String chatId = generateChatId();
+    private void archiveStep(InspectionItem item) throws IOException {
         try {
-            long refId = uploadFile(file, appId, chatId);
-            callCompletion(refId, chatId);
-            moveToHistory(file.toPath(), historyDir);
-            logger.log("点检照片已归档");
-            logger.historyChanged(historyDir);
-        } catch (Exception e) {
-            logger.log("处理失败：" + e.getMessage());
+            HistoryIndex.HistoryRecord archived = moveToHistory(item);
+            journal().record(item.fileName(), item.size(), archived.archivePath().getFileName().toString());
+            recordStage(WorkQueueLog.Stage.ARCHIVED, item);
+            logger.event(InspectionEvent.of(Type.ARCHIVED, Stage.ARCHIVE, Severity.SUCCESS, item.fileName(), item.chatId()));
+            logger.historyChanged(historyDir, archived);
+        } finally {
+            inFlight.remove(item.source());
+        }
+    }
+
+    private void recordIngestLatency(long nanos) {
+        latencySamples.incrementAndGet();
+        latencyTotalNanos.addAndGet(nanos);
+        latencyLastNanos.set(nanos);
+        latencyMaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private void note(Stage stage, Severity severity, String text) {
+        logger.event(InspectionEvent.note(stage, severity, text));
+    }
+
+    /** 失败所在的阶段：已识别则为归档，已上传则为识别，否则为上传前后。 */
+    private static Stage failedStage(InspectionItem item) {
+        if (item.completion() != null) {
+            return Stage.ARCHIVE;
         }
+        return item.refId() != 0 ? Stage.COMPLETION : Stage.UPLOAD;
     }
 
-    private long uploadFile(File file, long appId, String chatId) throws IOException {
-        logger.log("正在上传照片到智能体平台并鉴权");
-        MultipartBody.Builder bodyBuilder = new MultipartBody.Builder().setType(MultipartBody.FORM)
-                .addFormDataPart("files", file.getName(), RequestBody.create(file, MediaType.parse("application/octet-stream")))
-                .addFormDataPart("appId", String.valueOf(appId))
-                .addFormDataPart("chatId", chatId);
+    private void onBatchFailed(InspectionBatch batch, Exception e) {
+        for (InspectionItem item : batch.items()) {
+            onItemFailed(item, e);
+        }
+    }
+
+    /** 运行中的失败从头重试；停止过程中被打断的照片保留当前阶段，下次启动继续。 */
+    private void onItemFailed(InspectionItem item, Exception e) {
+        inFlight.remove(item.source());
+        if (!running.get()) {
+            logger.event(InspectionEvent.of(Type.INTERRUPTED, failedStage(item), Severity.WARN,
+                    item.fileName(), item.chatId()));
+            return;
+        }
+        recordStage(WorkQueueLog.Stage.DROPPED, item);
+        logger.event(InspectionEvent.of(Type.FAILED, failedStage(item), Severity.ERROR,
+                item.fileName(), item.chatId()).withDetail(e.getMessage()));
+    }
+
+    private List<Long> uploadFiles(InspectionBatch batch) throws IOException, InterruptedException {
+        logger.event(InspectionEvent.of(Type.UPLOADING, Stage.UPLOAD, Severity.INFO, batch.describe(), batch.chatId()));
+        MediaType octet = MediaType.parse("application/octet-stream");
+        MultipartBody.Builder bodyBuilder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        for (InspectionItem item : batch.items()) {
+            RequestBody fileBody = item.payload() != null
+                    ? RequestBody.create(item.payload(), octet)
+                    : RequestBody.create(item.source().toFile(), octet);
+            bodyBuilder.addFormDataPart("files", item.uploadName(), fileBody);
+        }
+        bodyBuilder.addFormDataPart("appId", String.valueOf(batch.appId()))
+                .addFormDataPart("chatId", batch.chatId());
 
         Request request = new Request.Builder()
                 .url(config.uploadUrl())
                 .addHeader("Authorization", config.token())
                 .addHeader("User-Agent", "KnowledgeRobot")
+                .tag(CallMetrics.class, uploadMetrics)
                 .post(bodyBuilder.build())
                 .build();
 
-        logger.log("已通过验证");
-
-        try (Response resp = httpClient.newCall(request).execute()) {
-            String body = resp.body() != null ? resp.body().string() : "";
-            if (!resp.isSuccessful()) {
-                throw new IOException("上传失败，HTTP " + resp.code());
+        try (AdaptiveLimiter.Permit permit = uploadLimiter.acquire()) {
+            try (Response resp = httpClient.newCall(request).execute()) {
+                String body = resp.body() != null ? resp.body().string() : "";
+                permit.record(resp.code());
+                if (!resp.isSuccessful()) {
+                    throw new IOException("上传失败，HTTP " + resp.code());
+                }
+                List<Long> refIds = parseRefIds(body, batch.items());
+                // 平台接受上传并返回图片 ID 才算通过鉴权
+                logger.event(InspectionEvent.authorized(batch.describe(), batch.chatId(),
+                        resp.receivedResponseAtMillis() - resp.sentRequestAtMillis()));
+                return refIds;
+            } catch (IOException e) {
+                permit.failed(e);
+                throw e;
             }
-            long refId = parseRefId(body);
-            return refId;
         }
     }
 
-    private long parseRefId(String body) throws IOException {
+    /**
+     * 解析 {@code resultObject.image[]}，按顺序返回与 {@code items} 一一对应的图片 ID。
+     * 响应中带文件名且能唯一对应时按文件名匹配，否则要求数量一致并按上传顺序对应。
+     */
+    private List<Long> parseRefIds(String body, List<InspectionItem> items) throws IOException {
         var node = mapper.readTree(body);
         var images = node.path("resultObject").path("image");
-        if (images.isArray() && images.size() > 0) {
-            var idNode = images.get(0).get("id");
-            if (idNode != null && !idNode.isNull()) {
-                String idText = idNode.asText();
-                try {
-                    return Long.parseLong(idText);
-                } catch (NumberFormatException ex) {
-                    throw new IOException("上传响应ID格式错误: " + idText, ex);
-                }
+        if (!images.isArray() || images.isEmpty()) {
+            throw new IOException("上传响应缺少图片ID");
+        }
+        Map<String, Long> byName = new HashMap<>();
+        List<Long> inOrder = new ArrayList<>();
+        for (JsonNode image : images) {
+            JsonNode idNode = image.get("id");
+            if (idNode == null || idNode.isNull()) {
+                throw new IOException("上传响应缺少图片ID");
+            }
+            String idText = idNode.asText();
+            long id;
+            try {
+                id = Long.parseLong(idText);
+            } catch (NumberFormatException ex) {
+                throw new IOException("上传响应ID格式错误: " + idText, ex);
+            }
+            inOrder.add(id);
+            String name = firstText(image, "name", "fileName", "filename", "originalName");
+            if (name != null) {
+                byName.merge(name, id, (a, b) -> -1L);
+            }
+        }
+        List<Long> matched = new ArrayList<>(items.size());
+        for (InspectionItem item : items) {
+            Long id = byName.get(item.uploadName());
+            if (id == null || id < 0) {
+                break;
+            }
+            matched.add(id);
+        }
+        if (matched.size() == items.size() && Set.copyOf(matched).size() == items.size()) {
+            return matched;
+        }
+        if (inOrder.size() != items.size()) {
+            throw new IOException("上传响应图片数量不符：期望 " + items.size() + "，实际 " + inOrder.size());
+        }
+        return inOrder;
+    }
+
+    private static String firstText(JsonNode node, String... fields) {
+        for (String field : fields) {
+            JsonNode v = node.get(field);
+            if (v != null && v.isTextual() && !v.asText().isEmpty()) {
+                return v.asText();
             }
         }
-        throw new IOException("上传响应缺少图片ID");
+        return null;
     }
 
-    private void callCompletion(long refId, String chatId) throws IOException {
-        logger.log("智能体平台正在进行人脸切图识别处理 ");
+    private CompletionResult callCompletion(InspectionBatch batch) throws IOException, InterruptedException {
+        logger.event(InspectionEvent.of(Type.RECOGNIZING, Stage.COMPLETION, Severity.INFO, batch.describe(), batch.chatId()));
+        List<Long> refIds = batch.refIds();
+        String chatId = batch.chatId();
         var payloadNode = mapper.createObjectNode();
         payloadNode.put("chatId", chatId);
         payloadNode.put("stream", true);
-        payloadNode.putArray("refs").add(refId);
+        var refs = payloadNode.putArray("refs");
+        refIds.forEach(refs::add);
         var messages = payloadNode.putArray("messages");
         messages.add(mapper.createObjectNode()
                 .put("role", "user")
@@ -217,32 +741,129 @@ public class SmartInspectionService {
                 .url(config.completionUrl())
                 .addHeader("Authorization", config.token())
                 .addHeader("Content-Type", "application/json")
+                .addHeader("Accept", "text/event-stream")
+                .tag(CallMetrics.class, completionMetrics)
                 .post(body)
                 .build();
 
+        try (AdaptiveLimiter.Permit permit = completionLimiter.acquire()) {
+            try {
+                return streamCompletion(request, permit);
+            } catch (IOException e) {
+                permit.failed(e);
+                throw e;
+            }
+        }
+    }
+
+    /** 识别耗时主要取决于输出长度，限流样本取首个事件到达的时间。 */
+    private CompletionResult streamCompletion(Request request, AdaptiveLimiter.Permit permit) throws IOException {
+        long startNanos = System.nanoTime();
         try (Response resp = httpClient.newCall(request).execute()) {
             if (!resp.isSuccessful()) {
+                permit.record(resp.code());
                 throw new IOException("处理接口返回失败，HTTP " + resp.code());
             }
-            logger.log("识别完毕，点检结果已提交PG报表数据库");
+            if (resp.body() == null) {
+                throw new IOException("处理接口无响应内容");
+            }
+            CompletionStream stream = new CompletionStream();
+            SseDecoder sse = new SseDecoder(resp.body().source());
+            while (sse.next() && stream.onEvent(sse)) {
+                // 直到结束事件或连接关闭
+            }
+            long bytes = sse.bytesRead();
+            if (stream.error != null) {
+                throw new IOException("处理接口返回错误：" + stream.error);
+            }
+            long now = System.nanoTime();
+            long first = stream.firstEventNanos == 0 ? now : stream.firstEventNanos;
+            permit.success(first - startNanos);
+            return new CompletionResult(
+                    TimeUnit.NANOSECONDS.toMillis(first - startNanos),
+                    TimeUnit.NANOSECONDS.toMillis(now - startNanos),
+                    bytes,
+                    stream.delta.content().toString(),
+                    stream.terminated);
         }
     }
 
-    private void moveToHistory(Path file, Path historyDir) throws IOException {
-        String timestamp = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss").format(LocalDateTime.now());
-        Path target = historyDir.resolve(timestamp + "_" + file.getFileName());
-        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
-        Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+    /**
+     * 按事件解析识别接口的 SSE 流：拼接 {@code choices[0].delta.content}，
+     * 遇到 {@code [DONE]}、{@code finish_reason} 或 done/finish 类事件即视为结束。
+     */
+    private static final class CompletionStream {
+        private final ChatDeltaParser delta = new ChatDeltaParser();
+        private long firstEventNanos;
+        private boolean terminated;
+        private String error;
+
+        boolean onEvent(SseDecoder sse) {
+            if (firstEventNanos == 0) {
+                firstEventNanos = System.nanoTime();
+            }
+            String event = sse.event();
+            if (event.equalsIgnoreCase("done") || event.equalsIgnoreCase("finish") || event.equalsIgnoreCase("end")) {
+                terminated = true;
+                return false;
+            }
+            if (!sse.hasData()) {
+                return true;
+            }
+            if (sse.isDoneMarker()) {
+                terminated = true;
+                return false;
+            }
+            // 非 JSON 数据原样忽略
+            if (delta.accept(sse.data())) {
+                if (delta.error() != null) {
+                    error = delta.error();
+                    return false;
+                }
+                if (delta.finishReason() != null) {
+                    terminated = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 移入 his/ 并登记到历史索引。归档名为 {@code yyyyMMdd_HHmmss_原文件名}，同一秒内目标已存在时
+     * 把时间戳顺延一秒再试，既不覆盖已有归档，也保持 {@link ProcessedJournal#originalName} 能解析的命名格式；
+     * 移动与登记在归档锁内完成，索引记录顺序与归档顺序一致。
+     */
+    private HistoryIndex.HistoryRecord moveToHistory(InspectionItem item) throws IOException {
+        Path file = item.source();
+        synchronized (archiveLock) {
+            // 先打开索引：首次打开会从 his/ 重建，必须在本张照片移入之前
+            HistoryIndex index = HistoryIndex.forHistory(historyDir);
+            LocalDateTime ts = LocalDateTime.now();
+            while (true) {
+                Path target = ArchiveLayout.target(historyDir, ts, file.getFileName().toString());
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(file, target);
+                } catch (FileAlreadyExistsException ex) {
+                    ts = ts.plusSeconds(1);
+                    continue;
+                }
+                Instant now = Instant.now();
+                Files.setLastModifiedTime(target, FileTime.from(now));
+                HistoryIndex.HistoryRecord record = new HistoryIndex.HistoryRecord(
+                        now.toEpochMilli(), item.fileName(), target, item.size(),
+                        item.completion() != null ? HistoryIndex.Outcome.COMPLETED : HistoryIndex.Outcome.REUSED);
+                index.append(record);
+                return record;
+            }
+        }
     }
 
 
+    /** 19 位随机 appId；直接在 long 范围内取值，避免拼接数字串溢出。 */
     private long generateAppId() {
-        StringBuilder sb = new StringBuilder();
-        while (sb.length() < 19) {
-            long value = Math.abs((long) (Math.random() * 10));
-            sb.append(value);
-        }
-        return Long.parseLong(sb.toString());
+        return ThreadLocalRandom.current().nextLong(1_000_000_000_000_000_000L, Long.MAX_VALUE);
     }
 
     private String generateChatId() {
@@ -254,15 +875,4 @@ public class SmartInspectionService {
         }
         return sb.toString();
     }
-
-    private OkHttpClient buildClient() {
-        return new OkHttpClient.Builder()
-                .sslSocketFactory(TrustAllSslContext.socketFactory(), TrustAllSslContext.trustManager())
-                .hostnameVerifier((hostname, session) -> true)
-                .callTimeout(java.time.Duration.ofSeconds(180))
-                .readTimeout(java.time.Duration.ofSeconds(180))
-                .connectTimeout(java.time.Duration.ofSeconds(30))
-                .writeTimeout(java.time.Duration.ofSeconds(60))
-                .build();
-    }
 }
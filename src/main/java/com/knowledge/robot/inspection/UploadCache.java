@@ -0,0 +1,186 @@
+package com.knowledge.robot.inspection;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按图片内容（SHA-256）缓存上传结果：相机以新文件名重复导出同一帧时直接复用 refId，
+ * 已识别过的内容连识别也跳过。
+ * <p>
+ * 落盘为 {@code his/.index/upload-cache.tsv}，每次变更追加一行（同一哈希以最后一行为准），
+ * 启动时加载并按 TTL 过滤；内存中按访问顺序保留最多 {@code maxEntries} 条，追加行数过多时整体重写压缩。
+ */
+final class UploadCache {
+    private static final String CACHE_FILE = "upload-cache.tsv";
+    private static final int READ_BUFFER = 64 << 10;
+
+    record Entry(long refId, String chatId, long createdMillis, boolean completed, String summary) {
+    }
+
+    private final Path file;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private int appendedLines;
+
+    private UploadCache(Path file, int maxEntries, long ttlHours) {
+        this.file = file;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = TimeUnit.HOURS.toMillis(Math.max(1, ttlHours));
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > UploadCache.this.maxEntries;
+            }
+        };
+    }
+
+    static UploadCache open(Path historyDir, int maxEntries, long ttlHours) throws IOException {
+        Path dir = historyDir.resolve(ProcessedJournal.INDEX_DIR);
+        Files.createDirectories(dir);
+        UploadCache cache = new UploadCache(dir.resolve(CACHE_FILE), maxEntries, ttlHours);
+        cache.load();
+        return cache;
+    }
+
+    /**
+     * 流式计算文件 SHA-256，无论大小都用 64 KB 缓冲逐段读取。不用内存映射：Windows 上映射在 GC 回收前
+     * 一直占着文件，随后归档时的移动会失败。
+     */
+    static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER);
+            while (ch.read(buf) > 0) {
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** 查找未过期的缓存条目，并计入命中/未命中次数。 */
+    synchronized Entry lookup(String hash) {
+        Entry e = entries.get(hash);
+        if (e != null && isExpired(e, System.currentTimeMillis())) {
+            entries.remove(hash);
+            e = null;
+        }
+        (e == null ? misses : hits).incrementAndGet();
+        return e;
+    }
+
+    synchronized void putUploaded(String hash, long refId, String chatId) throws IOException {
+        put(hash, new Entry(refId, chatId, System.currentTimeMillis(), false, ""));
+    }
+
+    synchronized void markCompleted(String hash, long refId, String chatId, String summary) throws IOException {
+        Entry prev = entries.get(hash);
+        long created = prev != null ? prev.createdMillis() : System.currentTimeMillis();
+        String s = summary == null ? "" : summary.strip();
+        put(hash, new Entry(refId, chatId, created, true, s.length() > 200 ? s.substring(0, 200) : s));
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    private void put(String hash, Entry entry) throws IOException {
+        entries.put(hash, entry);
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
+            writeLine(w, hash, entry);
+        }
+        if (++appendedLines > Math.max(1024, entries.size() * 2)) {
+            compact();
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] p = line.split("\t", -1);
+                if (p.length < 6) {
+                    continue;
+                }
+                try {
+                    Entry e = new Entry(Long.parseLong(p[1]), p[2], Long.parseLong(p[3]),
+                            "1".equals(p[4]), p[5].replace("\\n", "\n"));
+                    entries.remove(p[0]);
+                    if (!isExpired(e, now)) {
+                        entries.put(p[0], e);
+                    }
+                } catch (NumberFormatException ignored) {
+                    // 截断的记录
+                }
+                appendedLines++;
+            }
+        }
+        if (appendedLines > entries.size() * 2) {
+            compact();
+        }
+    }
+
+    /** 只保留当前有效条目重写缓存文件。 */
+    private void compact() throws IOException {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (isExpired(it.next().getValue(), now)) {
+                it.remove();
+            }
+        }
+        Path tmp = file.resolveSibling(CACHE_FILE + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                writeLine(w, e.getKey(), e.getValue());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        appendedLines = entries.size();
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        return now - e.createdMillis() > ttlMillis;
+    }
+
+    private static void writeLine(BufferedWriter w, String hash, Entry e) throws IOException {
+        String summary = e.summary().replace("\t", " ").replace("\r", "").replace("\n", "\\n");
+        w.write(hash + '\t' + e.refId() + '\t' + e.chatId() + '\t' + e.createdMillis() + '\t'
+                + (e.completed() ? '1' : '0') + '\t' + summary);
+        w.newLine();
+    }
+}
@@ -0,0 +1,162 @@
+package com.knowledge.robot.inspection;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 点检流水线的预写日志：记录每张照片的阶段推进（发现、已上传、已识别、已归档），
+ * 程序中途关闭后下次启动可从最后完成的阶段继续，已经拿到 refId 的照片不必重新上传。
+ * <p>
+ * 落盘为 {@code his/.index/workqueue.log}，每次阶段推进追加一行并刷盘；同一文件名以最后一行为准。
+ * 归档或放弃的条目视为结束，打开与关闭时只保留未结束的条目重写文件。
+ */
+final class WorkQueueLog implements AutoCloseable {
+    private static final String LOG_FILE = "workqueue.log";
+
+    enum Stage {
+        /** 已发现，尚未上传 */
+        DISCOVERED,
+        /** 已上传，持有 refId/chatId，尚未识别 */
+        UPLOADED,
+        /** 已识别，尚未归档 */
+        COMPLETED,
+        /** 已归档（结束） */
+        ARCHIVED,
+        /** 处理失败，下次扫描从头处理（结束） */
+        DROPPED;
+
+        boolean finished() {
+            return this == ARCHIVED || this == DROPPED;
+        }
+    }
+
+    record Entry(Stage stage, String name, long size, long appId, String chatId, long refId, String contentHash) {
+    }
+
+    private final Path file;
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private FileChannel channel;
+    private int lines;
+
+    private WorkQueueLog(Path file) {
+        this.file = file;
+    }
+
+    static WorkQueueLog open(Path historyDir) throws IOException {
+        Path dir = historyDir.resolve(ProcessedJournal.INDEX_DIR);
+        Files.createDirectories(dir);
+        WorkQueueLog log = new WorkQueueLog(dir.resolve(LOG_FILE));
+        log.load();
+        log.compact();
+        log.channel = FileChannel.open(log.file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return log;
+    }
+
+    /** 记录照片进入某一阶段；结束阶段会把条目移出未完成列表。 */
+    synchronized void record(Stage stage, InspectionItem item) throws IOException {
+        append(new Entry(stage, item.fileName(), item.size(), item.appId(), item.chatId(),
+                item.refId(), item.contentHash()));
+    }
+
+    /** 放弃一条未完成条目（例如照片已被移走）。 */
+    synchronized void drop(Entry entry) throws IOException {
+        append(new Entry(Stage.DROPPED, entry.name(), entry.size(), entry.appId(), entry.chatId(),
+                entry.refId(), entry.contentHash()));
+    }
+
+    /** 指定文件名的未完成条目；大小不符（同名新文件）时视为无记录。 */
+    synchronized Entry pending(String name, long size) {
+        Entry e = pending.get(name);
+        return e != null && e.size() == size ? e : null;
+    }
+
+    synchronized List<Entry> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            if (lines > pending.size()) {
+                compact();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            channel = null;
+        }
+    }
+
+    private void append(Entry e) throws IOException {
+        if (channel == null) {
+            throw new IOException("工作队列日志已关闭");
+        }
+        channel.write(ByteBuffer.wrap(format(e).getBytes(StandardCharsets.UTF_8)));
+        channel.force(false);
+        lines++;
+        apply(e);
+    }
+
+    private void apply(Entry e) {
+        if (e.stage().finished()) {
+            pending.remove(e.name());
+        } else {
+            pending.put(e.name(), e);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] p = line.split("\t", -1);
+                if (p.length < 7) {
+                    continue;
+                }
+                try {
+                    apply(new Entry(Stage.valueOf(p[0]), ProcessedJournal.unescape(p[1]), Long.parseLong(p[2]),
+                            Long.parseLong(p[3]), p[4], Long.parseLong(p[5]), p[6].isEmpty() ? null : p[6]));
+                } catch (IllegalArgumentException ignored) {
+                    // 崩溃时写了一半的记录
+                }
+                lines++;
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        Path tmp = file.resolveSibling(LOG_FILE + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Entry e : pending.values()) {
+                w.write(format(e));
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        lines = pending.size();
+    }
+
+    private static String format(Entry e) {
+        return e.stage().name() + '\t' + ProcessedJournal.escape(e.name()) + '\t' + e.size() + '\t'
+                + e.appId() + '\t' + e.chatId() + '\t' + e.refId() + '\t'
+                + (e.contentHash() == null ? "" : e.contentHash()) + '\n';
+    }
+}
@@ -1,11 +1,16 @@
 package com.knowledge.robot.service;
 
+import com.knowledge.robot.http.ChatClient;
+import com.knowledge.robot.util.AppSettings;
+import com.knowledge.robot.util.IdUtil;
 import com.knowledge.robot.util.QuestionBank;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -14,7 +19,13 @@ import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 import java.util.function.Supplier;
 
+/**
+ * 自动对话：单用户模式按间隔逐个提问；压测模式（{@link #startLoad}）由 {@link LoadGenerator}
+ * 以多个虚拟用户或固定到达率并发提问，并定期回调 {@link LoadReport}。
+ */
 public class AutoChatService {
+    private static final int CHAT_ID_LENGTH = 12;
+
     private final Supplier<List<String>> categorySupplier;
     private final Supplier<Boolean> randomIntervalSupplier;
     private final Supplier<Integer> maxSecondsSupplier;
@@ -29,6 +40,8 @@ public class AutoChatService {
         return t;
     });
     private final AtomicBoolean started = new AtomicBoolean(false);
+    private ChatClient client;
+    private LoadGenerator load;
 
     public AutoChatService(Supplier<List<String>> categorySupplier,
                            Supplier<Boolean> randomIntervalSupplier,
@@ -56,6 +69,27 @@ public class AutoChatService {
     public void stop() {
         started.set(false);
         scheduler.shutdownNow();
+        stopLoad();
+    }
+
+    /** 按 {@code profile} 开始压测；已有压测在运行时忽略。报告在后台线程回调，界面需自行切回 EDT。 */
+    public synchronized void startLoad(LoadProfile profile, Consumer<LoadReport> reporter) {
+        if (load != null && load.running()) {
+            return;
+        }
+        load = new LoadGenerator(client(), profile, categorySupplier, reporter);
+        load.start();
+    }
+
+    public synchronized void stopLoad() {
+        if (load != null) {
+            load.stop();
+            load = null;
+        }
+    }
+
+    public synchronized boolean loadRunning() {
+        return load != null && load.running();
     }
 
     public void askOnce(String question) {
@@ -65,11 +99,34 @@ public class AutoChatService {
         thinkConsumer.accept("<<CLEAR_THOUGHTS>>");
         thinkConsumer.accept(timestamp() + " 思考: 正在准备回答...\n");
         convoConsumer.accept("我: " + question);
-        // 模拟助手回复
-        convoConsumer.accept("助手: " + "自动学习占位实现，您的问题已记录。\n");
+        ChatExchange exchange = ChatExchange.start(client(), IdUtil.randomId(CHAT_ID_LENGTH), question);
+        try {
+            ChatExchange.Result r = exchange.result().get();
+            convoConsumer.accept("助手: " + r.content() + "\n");
+            thinkConsumer.accept(timestamp() + " 首个事件 " + TimeUnit.NANOSECONDS.toMillis(r.ttfbNanos())
+                    + " ms，总耗时 " + TimeUnit.NANOSECONDS.toMillis(r.totalNanos()) + " ms\n");
+            StatsStore.increment();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            convoConsumer.accept("助手: 请求失败：" + cause.getMessage() + "\n");
+        } catch (CancellationException e) {
+            return;
+        } catch (InterruptedException e) {
+            exchange.result().cancel(true);
+            Thread.currentThread().interrupt();
+            return;
+        }
         onFinished.run();
     }
 
+    private synchronized ChatClient client() {
+        if (client == null) {
+            AppSettings settings = AppSettings.get();
+            client = new ChatClient(settings.chatUrl(), settings.apiToken());
+        }
+        return client;
+    }
+
     private void loop(AtomicBoolean runningFlag) {
         while (runningFlag.get() && started.get()) {
             int waitSeconds = calculateIntervalSeconds();
@@ -0,0 +1,130 @@
+package com.knowledge.robot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.knowledge.robot.http.ChatClient;
+import com.knowledge.robot.http.ChatDelta;
+import com.knowledge.robot.util.AppSettings;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * 一次流式对话：订阅 {@link ChatClient#streamChat}，逐条请求已解析的增量并拼接回答，
+ * 收到 {@code [DONE]} 或 {@code finish_reason} 即完成并取消订阅。
+ * 取消 {@link #result()} 会取消底层调用。
+ */
+final class ChatExchange implements Flow.Subscriber<ChatDelta> {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * @param ttfbNanos  发起到首个事件的耗时
+     * @param totalNanos 发起到完成的耗时
+     * @param bytes      收到的 data 字节数（UTF-8）
+     */
+    record Result(String content, long ttfbNanos, long totalNanos, long bytes) {
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final StringBuilder content = new StringBuilder();
+    private final CompletableFuture<Result> result = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+    private long firstEventNanos;
+    private long bytes;
+
+    private ChatExchange() {
+        result.whenComplete((r, e) -> {
+            Flow.Subscription s = subscription;
+            if (s != null && result.isCancelled()) {
+                s.cancel();
+            }
+        });
+    }
+
+    static ChatExchange start(ChatClient client, String chatId, String question) {
+        ChatExchange exchange = new ChatExchange();
+        client.streamChat(payload(chatId, question)).subscribe(exchange);
+        return exchange;
+    }
+
+    /** 与点检识别相同的请求体，另带 {@code api.refs} 与 {@code api.agentlink}。 */
+    static String payload(String chatId, String question) {
+        AppSettings settings = AppSettings.get();
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("chatId", chatId);
+        node.put("stream", true);
+        var refs = node.putArray("refs");
+        settings.apiRefs().forEach(refs::add);
+        String agentLink = settings.apiAgentLink();
+        if (!agentLink.isEmpty()) {
+            try {
+                node.set("agentlink", MAPPER.readTree(agentLink));
+            } catch (IOException ignored) {
+                // 配置不是合法 JSON 时不发送
+            }
+        }
+        node.putArray("messages").add(MAPPER.createObjectNode()
+                .put("role", "user")
+                .put("content", question));
+        return node.toString();
+    }
+
+    CompletableFuture<Result> result() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription s) {
+        subscription = s;
+        if (result.isDone()) {
+            s.cancel();
+        } else {
+            s.request(1);
+        }
+    }
+
+    @Override
+    public void onNext(ChatDelta delta) {
+        if (firstEventNanos == 0) {
+            firstEventNanos = System.nanoTime();
+        }
+        bytes += delta.dataBytes();
+        if (delta.done()) {
+            finish();
+            return;
+        }
+        content.append(delta.text());
+        if (delta.error() != null) {
+            subscription.cancel();
+            result.completeExceptionally(new IOException("对话接口返回错误：" + delta.error()));
+            return;
+        }
+        if (delta.finishReason() != null) {
+            finish();
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        result.completeExceptionally(t);
+    }
+
+    @Override
+    public void onComplete() {
+        complete();
+    }
+
+    private void finish() {
+        subscription.cancel();
+        complete();
+    }
+
+    private void complete() {
+        long now = System.nanoTime();
+        long first = firstEventNanos == 0 ? now : firstEventNanos;
+        result.complete(new Result(content.toString(), first - startNanos, now - startNanos, bytes));
+    }
+}
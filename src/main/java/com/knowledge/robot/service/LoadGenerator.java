@@ -0,0 +1,260 @@
+package com.knowledge.robot.service;
+
+import com.knowledge.robot.http.ChatClient;
+import com.knowledge.robot.util.IdUtil;
+import com.knowledge.robot.util.QuestionBank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 对知识问答接口的压测：每次对话使用新的随机 chatId 与题库中的随机问题，走真实的 {@link ChatClient} 流式调用。
+ * 会话运行在虚拟线程上，等待回答不占用平台线程。
+ * <p>
+ * 开放模型按固定间隔计算每次到达的计划时刻，发起慢了（在途已满或调度落后）不会顺延后续到达，
+ * 响应时间从计划时刻算起，后端变慢时不会因为“少发请求”而低估延迟。
+ * 对话仍经过“对话”自适应限流器，等待额度的时间同样计入响应时间。
+ */
+final class LoadGenerator {
+    private static final int CHAT_ID_LENGTH = 12;
+
+    private final ChatClient client;
+    private final LoadProfile profile;
+    private final Supplier<List<String>> categories;
+    private final Consumer<LoadReport> reporter;
+    private final ExecutorService sessions =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("load-session-", 0).factory());
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "load-report");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final List<SessionStats> users = new ArrayList<>();
+    private final Semaphore slots;
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+    private final LongAdder responseNanos = new LongAdder();
+    private final LongAccumulator maxServiceNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxResponseNanos = new LongAccumulator(Math::max, 0);
+    private volatile String lastError;
+
+    private long startNanos;
+    /** 以下两项只在报告线程上读写 */
+    private long lastReportNanos;
+    private long lastCompleted;
+
+    LoadGenerator(ChatClient client, LoadProfile profile, Supplier<List<String>> categories,
+                  Consumer<LoadReport> reporter) {
+        this.client = client;
+        this.profile = profile;
+        this.categories = categories;
+        this.reporter = reporter;
+        this.slots = new Semaphore(profile.maxInFlight());
+        if (profile.model() == LoadProfile.Model.CLOSED) {
+            for (int i = 1; i <= profile.sessions(); i++) {
+                users.add(new SessionStats(i));
+            }
+        }
+    }
+
+    void start() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+        if (profile.model() == LoadProfile.Model.OPEN) {
+            sessions.execute(this::arrivals);
+        } else {
+            for (SessionStats user : users) {
+                sessions.execute(() -> closedSession(user));
+            }
+        }
+        ticker.scheduleAtFixedRate(() -> report(false),
+                profile.reportSeconds(), profile.reportSeconds(), TimeUnit.SECONDS);
+        if (profile.durationSeconds() > 0) {
+            ticker.schedule(this::stop, profile.durationSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    boolean running() {
+        return running.get();
+    }
+
+    /** 停止发起新对话并取消在途对话，随后给出最终报告。 */
+    void stop() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        for (CompletableFuture<?> f : inFlight) {
+            f.cancel(true);
+        }
+        sessions.shutdownNow();
+        ticker.execute(() -> {
+            report(true);
+            ticker.shutdown();
+        });
+    }
+
+    private void closedSession(SessionStats user) {
+        while (running.get()) {
+            chat(user, System.nanoTime());
+            if (profile.thinkMillis() > 0 && running.get()) {
+                try {
+                    Thread.sleep(profile.thinkMillis());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** 开放模型的到达调度：第 i 次到达的计划时刻固定为 start + i × 间隔。 */
+    private void arrivals() {
+        long periodNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / profile.arrivalsPerSecond()));
+        for (long i = 0; running.get(); i++) {
+            long intended = startNanos + i * periodNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!running.get()) {
+                slots.release();
+                return;
+            }
+            try {
+                sessions.execute(() -> {
+                    try {
+                        chat(null, intended);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                slots.release();
+                return;
+            }
+        }
+    }
+
+    private void chat(SessionStats user, long intendedNanos) {
+        String chatId = IdUtil.randomId(CHAT_ID_LENGTH);
+        if (user != null) {
+            user.chatId = chatId;
+        }
+        issued.increment();
+        long sentNanos = System.nanoTime();
+        CompletableFuture<ChatExchange.Result> result =
+                ChatExchange.start(client, chatId, QuestionBank.randomQuestion(categories.get())).result();
+        inFlight.add(result);
+        try {
+            ChatExchange.Result r = result.get();
+            long end = System.nanoTime();
+            record(user, end - sentNanos, end - intendedNanos, r.bytes());
+            StatsStore.increment();
+        } catch (ExecutionException e) {
+            if (running.get()) {
+                failed.increment();
+                if (user != null) {
+                    user.failed.incrementAndGet();
+                }
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                lastError = cause.getClass().getSimpleName() + "：" + cause.getMessage();
+            }
+        } catch (CancellationException e) {
+            // 停止时取消，不计入失败
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.remove(result);
+        }
+    }
+
+    private void record(SessionStats user, long service, long response, long received) {
+        completed.increment();
+        bytes.add(received);
+        serviceNanos.add(service);
+        responseNanos.add(response);
+        maxServiceNanos.accumulate(service);
+        maxResponseNanos.accumulate(response);
+        if (user != null) {
+            user.completed.incrementAndGet();
+            user.serviceNanos.addAndGet(service);
+        }
+    }
+
+    private void report(boolean finished) {
+        long now = System.nanoTime();
+        long done = completed.sum();
+        double windowSeconds = Math.max(1e-3, (now - lastReportNanos) / 1e9);
+        double elapsedSeconds = Math.max(1e-3, (now - startNanos) / 1e9);
+        long backlog = 0;
+        if (profile.model() == LoadProfile.Model.OPEN && !finished) {
+            backlog = Math.max(0, (long) (elapsedSeconds * profile.arrivalsPerSecond()) + 1 - issued.sum());
+        }
+        List<LoadReport.Session> sessionReports = new ArrayList<>(users.size());
+        for (SessionStats u : users) {
+            long c = u.completed.get();
+            sessionReports.add(new LoadReport.Session(u.id, u.chatId, c, u.failed.get(),
+                    (c - u.lastCompleted) / windowSeconds, c == 0 ? 0 : millis(u.serviceNanos.get() / c)));
+            u.lastCompleted = c;
+        }
+        LoadReport report = new LoadReport(profile.model(), millis(now - startNanos), finished,
+                inFlight.size(), done, failed.sum(), backlog,
+                (done - lastCompleted) / windowSeconds, done / elapsedSeconds, bytes.sum(),
+                done == 0 ? 0 : millis(serviceNanos.sum() / done), millis(maxServiceNanos.get()),
+                done == 0 ? 0 : millis(responseNanos.sum() / done), millis(maxResponseNanos.get()),
+                lastError, sessionReports);
+        lastReportNanos = now;
+        lastCompleted = done;
+        reporter.accept(report);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class SessionStats {
+        final int id;
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong serviceNanos = new AtomicLong();
+        volatile String chatId;
+        /** 只在报告线程上读写 */
+        long lastCompleted;
+
+        SessionStats(int id) {
+            this.id = id;
+        }
+    }
+}
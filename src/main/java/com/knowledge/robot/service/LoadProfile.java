@@ -0,0 +1,31 @@
+package com.knowledge.robot.service;
+
+import com.knowledge.robot.util.AppSettings;
+
+/**
+ * 压测参数。
+ * <ul>
+ *   <li>{@link Model#CLOSED}：{@code sessions} 个虚拟用户各自循环“提问 → 等回答完 → 思考 {@code thinkMillis}”，
+ *       吞吐由后端响应速度决定；</li>
+ *   <li>{@link Model#OPEN}：按 {@code arrivalsPerSecond} 的固定节奏发起对话，与后端快慢无关，
+ *       在途超过 {@code maxInFlight} 时后续到达排队，排队时间计入响应时间（修正协调遗漏）。</li>
+ * </ul>
+ * {@code durationSeconds} 为 0 时一直运行到停止。
+ */
+public record LoadProfile(Model model, int sessions, double arrivalsPerSecond, int maxInFlight,
+                          long thinkMillis, long durationSeconds, long reportSeconds) {
+
+    public enum Model {
+        CLOSED,
+        OPEN
+    }
+
+    /** 按 {@code app.properties} 的 {@code load.*} 配置；到达率大于 0 时为开放模型。 */
+    public static LoadProfile fromSettings(AppSettings settings) {
+        double rate = settings.loadArrivalsPerSecond();
+        return new LoadProfile(rate > 0 ? Model.OPEN : Model.CLOSED,
+                Math.max(1, settings.loadSessions()), rate, Math.max(1, settings.loadMaxInFlight()),
+                Math.max(0, settings.loadThinkMillis()), Math.max(0, settings.loadDurationSeconds()),
+                Math.max(1, settings.loadReportSeconds()));
+    }
+}
@@ -0,0 +1,47 @@
+package com.knowledge.robot.service;
+
+import java.util.List;
+
+/**
+ * 压测实时报告，每 {@link LoadProfile#reportSeconds()} 秒一份，停止时再给一份 {@code finished} 的最终报告。
+ * 吞吐分为最近一个报告窗口与自开始以来的平均值；服务时间从真正发出请求算起，
+ * 响应时间从计划发起时刻算起（开放模型中包含排队等待，闭环模型中两者相同）。
+ *
+ * @param backlog 开放模型中已到计划时刻但尚未发出的对话数
+ */
+public record LoadReport(LoadProfile.Model model, long elapsedMillis, boolean finished,
+                         int inFlight, long completed, long failed, long backlog,
+                         double windowPerSecond, double overallPerSecond, long bytes,
+                         long meanServiceMillis, long maxServiceMillis,
+                         long meanResponseMillis, long maxResponseMillis,
+                         String lastError, List<Session> sessions) {
+
+    /** 闭环模型中单个虚拟用户的统计；开放模型每次到达都是独立会话，不逐个列出。 */
+    public record Session(int id, String chatId, long completed, long failed,
+                          double windowPerSecond, long meanServiceMillis) {
+    }
+
+    public String render() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(finished ? "压测结束" : "压测进行中")
+                .append(model == LoadProfile.Model.OPEN ? "（开放模型）" : "（闭环模型，" + sessions.size() + " 个用户）")
+                .append("：已运行 ").append(elapsedMillis / 1000).append(" 秒，在途 ").append(inFlight)
+                .append("，完成 ").append(completed).append("，失败 ").append(failed)
+                .append(String.format("，当前 %.2f 次/秒，平均 %.2f 次/秒", windowPerSecond, overallPerSecond))
+                .append("，接收 ").append(bytes / 1024).append(" KB\n")
+                .append("  服务时间 平均 ").append(meanServiceMillis).append(" ms / 最大 ").append(maxServiceMillis).append(" ms");
+        if (model == LoadProfile.Model.OPEN) {
+            sb.append("；响应时间（含排队）平均 ").append(meanResponseMillis).append(" ms / 最大 ")
+                    .append(maxResponseMillis).append(" ms；积压 ").append(backlog);
+        }
+        if (lastError != null) {
+            sb.append("\n  最近错误：").append(lastError);
+        }
+        for (Session s : sessions) {
+            sb.append(String.format("%n  用户 %d（%s）完成 %d，失败 %d，%.2f 次/秒，平均 %d ms",
+                    s.id(), s.chatId() == null ? "-" : s.chatId(), s.completed(), s.failed(),
+                    s.windowPerSecond(), s.meanServiceMillis()));
+        }
+        return sb.toString();
+    }
+}
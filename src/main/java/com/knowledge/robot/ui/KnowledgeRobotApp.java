@@ -1,11 +1,18 @@
 package com.knowledge.robot.ui;
 
+import com.knowledge.robot.service.AutoChatService;
+import com.knowledge.robot.service.LoadProfile;
+import com.knowledge.robot.util.AppSettings;
+
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.text.JTextComponent;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 星际科技风深色主题主窗口：
@@ -15,6 +22,8 @@ import java.awt.event.WindowEvent;
  *
  * 约定：SmartInspectionPanel 中的日志文本组件需设置 name：
  *   logArea.setName("logArea");
+ *
+ * 以 {@code --load} 启动时不打开窗口，按 {@code load.*} 配置对对话接口压测，报告打印到控制台。
  */
 public class KnowledgeRobotApp extends JFrame {
 
@@ -256,7 +265,11 @@ public class KnowledgeRobotApp extends JFrame {
         btn.setFont(f.deriveFont(Font.BOLD, f.getSize()));
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
+        if (List.of(args).contains("--load")) {
+            runLoadTest();
+            return;
+        }
         try {
             // 先用系统默认 LAF，再叠加我们自己的深色主题
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -267,4 +280,30 @@ public class KnowledgeRobotApp extends JFrame {
             app.setVisible(true);
         });
     }
+
+    /**
+     * 无界面压测：定期把 {@link com.knowledge.robot.service.LoadReport#render()} 打印到标准输出，
+     * 运行满 {@code load.durationSeconds} 或 Ctrl+C 后输出最终报告并退出。
+     */
+    public static void runLoadTest() throws InterruptedException {
+        LoadProfile profile = LoadProfile.fromSettings(AppSettings.get());
+        AutoChatService chat = new AutoChatService(List::of, () -> false, () -> 0,
+                System.out::println, t -> { }, () -> { }, n -> { });
+        CountDownLatch finished = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            chat.stopLoad();
+            try {
+                finished.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) { }
+        }, "load-test-shutdown"));
+        System.out.println("开始压测：" + profile);
+        chat.startLoad(profile, report -> {
+            System.out.println(report.render());
+            if (report.finished()) {
+                finished.countDown();
+            }
+        });
+        finished.await();
+        System.exit(0);
+    }
 }
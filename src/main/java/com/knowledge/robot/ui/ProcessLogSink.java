@@ -0,0 +1,166 @@
+package com.knowledge.robot.ui;
+
+import com.knowledge.robot.inspection.InspectionEvent;
+import com.knowledge.robot.inspection.InspectionEvent.Severity;
+import com.knowledge.robot.util.BoundedRingBuffer;
+
+import javax.swing.*;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyleContext;
+import javax.swing.text.StyledDocument;
+import java.awt.Color;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 处理日志的输出端：工作线程只把 {@link InspectionEvent} 无锁放进有界环形缓冲区，
+ * 由 EDT 上的定时器按固定帧率一次性取出整批写入文档，每帧只滚动一次光标；
+ * 文档超过行数上限时从头部整段删除。缓冲区满时不阻塞工作线程，丢弃条数在下一帧补一行提示。
+ * 样式按事件的严重程度选择，文本在写入文档时才渲染；各类型事件在入队时计数，丢弃的事件同样计入。
+ * 每种样式的属性集按字号缓存为不可变对象，逐行追加不再新建属性。
+ */
+final class ProcessLogSink {
+    private static final int FRAME_MILLIS = 100;
+    private static final DateTimeFormatter TS_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // 日志配色（跟整体深色+蓝光风格协调）
+    private static final Color LOG_TS_COLOR      = new Color(140, 155, 185); // 时间戳
+    private static final Color LOG_NORMAL_COLOR  = new Color(192, 230, 255); // 普通信息
+    private static final Color LOG_HEADER_COLOR  = new Color(0, 200, 255);   // 分隔/启动/停止
+    private static final Color LOG_SUCCESS_COLOR = new Color(0, 210, 150);   // 成功类
+    private static final Color LOG_WARN_COLOR    = new Color(255, 205, 130); // 警告
+    private static final Color LOG_ERROR_COLOR   = new Color(255, 140, 140); // 错误
+
+    enum Style {
+        TIMESTAMP(LOG_TS_COLOR, false),
+        NORMAL(LOG_NORMAL_COLOR, false),
+        HEADER(LOG_HEADER_COLOR, true),
+        SUCCESS(LOG_SUCCESS_COLOR, true),
+        WARN(LOG_WARN_COLOR, true),
+        ERROR(LOG_ERROR_COLOR, true);
+
+        private final Color color;
+        private final boolean bold;
+
+        Style(Color color, boolean bold) {
+            this.color = color;
+            this.bold = bold;
+        }
+    }
+
+    private final JTextPane pane;
+    private final int maxLines;
+    private final BoundedRingBuffer<InspectionEvent> ring;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLongArray typeCounts = new AtomicLongArray(InspectionEvent.Type.values().length);
+    private final AtomicLongArray severityCounts = new AtomicLongArray(Severity.values().length);
+    private final Timer flusher = new Timer(FRAME_MILLIS, e -> flush());
+    /** 当前字号下各样式的不可变属性集，字号变化时整体重建；只在 EDT 上访问 */
+    private Map<Style, AttributeSet> styles = Map.of();
+    private int stylesFontSize = -1;
+
+    ProcessLogSink(JTextPane pane, int maxLines, int bufferSize) {
+        this.pane = pane;
+        this.maxLines = Math.max(100, maxLines);
+        this.ring = new BoundedRingBuffer<>(Math.max(64, bufferSize));
+        flusher.setCoalesce(true);
+        flusher.start();
+    }
+
+    /** 任意线程调用：计数后入队，不等待 EDT。 */
+    void append(InspectionEvent event) {
+        typeCounts.incrementAndGet(event.type().ordinal());
+        severityCounts.incrementAndGet(event.severity().ordinal());
+        if (!ring.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    long count(InspectionEvent.Type type) {
+        return typeCounts.get(type.ordinal());
+    }
+
+    long count(Severity severity) {
+        return severityCounts.get(severity.ordinal());
+    }
+
+    private void flush() {
+        long lost = dropped.sumThenReset();
+        if (ring.size() == 0 && lost == 0) {
+            return;
+        }
+        StyledDocument doc = pane.getStyledDocument();
+        Map<Style, AttributeSet> attrs = stylesFor(pane.getFont().getSize());
+        AttributeSet tsAttrs = attrs.get(Style.TIMESTAMP);
+        StringBuilder ts = new StringBuilder(24);
+        try {
+            // 一帧最多写入 maxLines 行，更早的反正会被立即裁掉
+            int budget = maxLines;
+            InspectionEvent event;
+            while (budget-- > 0 && (event = ring.poll()) != null) {
+                ts.setLength(0);
+                TS_FORMAT.formatTo(Instant.ofEpochMilli(event.timeMillis()), ts);
+                ts.append(" - ");
+                doc.insertString(doc.getLength(), ts.toString(), tsAttrs);
+                doc.insertString(doc.getLength(), event.render() + "\n", attrs.get(styleOf(event.severity())));
+            }
+            if (lost > 0) {
+                ts.setLength(0);
+                TS_FORMAT.formatTo(Instant.now(), ts);
+                ts.append(" - ");
+                doc.insertString(doc.getLength(), ts.toString(), tsAttrs);
+                doc.insertString(doc.getLength(), "日志过快，已省略 " + lost + " 条\n", attrs.get(Style.WARN));
+            }
+            trimHead(doc);
+        } catch (BadLocationException ignored) {
+        }
+        pane.setCaretPosition(doc.getLength());
+    }
+
+    /** 超出行数上限时一次删除头部多余的行（末尾换行后还有一个空段落，不计入）。 */
+    private void trimHead(StyledDocument doc) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        int excess = root.getElementCount() - 1 - maxLines;
+        if (excess > 0) {
+            doc.remove(0, root.getElement(excess).getStartOffset());
+        }
+    }
+
+    private Map<Style, AttributeSet> stylesFor(int fontSize) {
+        if (fontSize != stylesFontSize) {
+            Map<Style, AttributeSet> built = new EnumMap<>(Style.class);
+            for (Style s : Style.values()) {
+                SimpleAttributeSet a = new SimpleAttributeSet();
+                StyleConstants.setForeground(a, s.color);
+                StyleConstants.setFontSize(a, fontSize);
+                if (s.bold) {
+                    StyleConstants.setBold(a, true);
+                }
+                built.put(s, StyleContext.getDefaultStyleContext().addAttributes(SimpleAttributeSet.EMPTY, a));
+            }
+            styles = built;
+            stylesFontSize = fontSize;
+        }
+        return styles;
+    }
+
+    private static Style styleOf(Severity severity) {
+        return switch (severity) {
+            case INFO -> Style.NORMAL;
+            case NOTICE -> Style.HEADER;
+            case SUCCESS -> Style.SUCCESS;
+            case WARN -> Style.WARN;
+            case ERROR -> Style.ERROR;
+        };
+    }
+}
@@ -1,18 +1,23 @@
 package com.knowledge.robot.ui;
 
+import com.knowledge.robot.http.AdaptiveLimiter;
+import com.knowledge.robot.http.CallMetrics;
+import com.knowledge.robot.http.HttpTransport;
+import com.knowledge.robot.inspection.HistoryIndex;
+import com.knowledge.robot.inspection.InspectionEvent;
+import com.knowledge.robot.inspection.InspectionEvent.Severity;
+import com.knowledge.robot.inspection.InspectionEvent.Stage;
 import com.knowledge.robot.inspection.SmartInspectionConfig;
 import com.knowledge.robot.inspection.SmartInspectionLogger;
 import com.knowledge.robot.inspection.SmartInspectionService;
 import com.knowledge.robot.util.AppSettings;
+import com.knowledge.robot.util.LogLinearHistogram;
 import com.knowledge.robot.ui.ThemePalette;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.table.AbstractTableModel;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyledDocument;
+import javax.swing.table.TableRowSorter;
 import javax.swing.text.JTextComponent;
 import java.awt.*;
 import java.io.IOException;
@@ -20,12 +25,18 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.prefs.Preferences;
 
 public class SmartInspectionPanel extends JPanel implements SmartInspectionLogger {
     private static final String PREF_NODE = "com.knowledge.robot.ui.SmartInspection";
     private static final String KEY_FOLDER = "inspection_folder";
     private static final String KEY_INTERVAL = "inspection_interval";
+    private static final String KEY_WATCH = "inspection_watch";
+    private static final int THUMB_WIDTH = 120;
+    private static final int THUMB_HEIGHT = 80;
+    private static final int HISTORY_PAGE_SIZE = 500;
+    private static final int HISTORY_MERGE_MILLIS = 300;
 
     private final Preferences prefs = Preferences.userRoot().node(PREF_NODE);
 
@@ -34,12 +45,21 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
     private final JSpinner intervalSpinner =
             new JSpinner(new SpinnerNumberModel(60, 5, 3600, 5));
     private final int intervalColumns = 5;   // ★ 显示 5 个数字宽度
+    // 实时监听目录：开启后间隔仅作为低频对账扫描
+    private final JCheckBox watchCheck = new JCheckBox("实时监听目录", true);
 
     private final JButton startBtn = new JButton("启动任务");
     private final JButton stopBtn = new JButton("停止");
+    private final JLabel transportStatus = new JLabel(" ");
+    private final JLabel limiterStatus = new JLabel(" ");
+    private final JLabel metricsStatus = new JLabel(" ");
+    private final Timer transportTimer = new Timer(2000, e -> refreshTransportStatus());
 
     // 日志改成 JTextPane，支持按内容着色
     private final JTextPane processLogArea = new JTextPane();
+    private final ProcessLogSink logSink = new ProcessLogSink(processLogArea,
+            AppSettings.get().inspectionLogMaxLines(), AppSettings.get().inspectionLogBufferSize());
+    private final TitledBorder logBorder = new TitledBorder("处理日志");
 
     private final HistoryTableModel historyTableModel = new HistoryTableModel();
     private final JTable historyTable = new JTable(historyTableModel);
@@ -48,23 +68,25 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
     private final JSpinner daySpinner;
     private final JRadioButton groupByDay = new JRadioButton("按日期", true);
     private final JRadioButton groupByRange = new JRadioButton("按时段");
+    private final ThumbnailStore thumbnailStore =
+            new ThumbnailStore(AppSettings.get().historyThumbnailBudgetMb() << 20);
+    private final ThumbnailLoader thumbnailLoader =
+            new ThumbnailLoader(THUMB_WIDTH, THUMB_HEIGHT, this::onThumbnailLoaded);
+    private final JLabel thumbnailStats = new JLabel(" ");
+    private HistoryLoader historyLoader;
+    /** 当前表格对应的归档目录与时间范围，只在 EDT 上访问 */
+    private Path historyDir;
+    private long historyFrom;
+    private long historyTo;
+    private final java.util.concurrent.ConcurrentLinkedQueue<HistoryIndex.HistoryRecord> appendedHistory =
+            new java.util.concurrent.ConcurrentLinkedQueue<>();
+    private final Timer historyMerge = new Timer(HISTORY_MERGE_MILLIS, e -> mergeAppendedHistory());
+    private final Timer thumbnailPrefetch = new Timer(80, e -> prefetchVisibleThumbnails());
     private final JPanel params = new JPanel(new GridBagLayout());
     private final JPanel historyPanel = new JPanel(new BorderLayout());
 
     private SmartInspectionService service;
 
-    // 日志时间戳格式
-    private final SimpleDateFormat logTsFormat =
-            new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
-    // 日志配色（跟整体深色+蓝光风格协调）
-    private static final Color LOG_TS_COLOR      = new Color(140, 155, 185); // 时间戳
-    private static final Color LOG_NORMAL_COLOR  = new Color(192, 230, 255); // 普通信息
-    private static final Color LOG_HEADER_COLOR  = new Color(0, 200, 255);   // 分隔/启动/停止
-    private static final Color LOG_SUCCESS_COLOR = new Color(0, 210, 150);   // 成功类
-    private static final Color LOG_WARN_COLOR    = new Color(255, 205, 130); // （预留）警告
-    private static final Color LOG_ERROR_COLOR   = new Color(255, 140, 140); // 错误
-
     public SmartInspectionPanel() {
         this.fromDateSpinner = createDateSpinner();
         this.toDateSpinner = createDateSpinner();
@@ -111,23 +133,38 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
                 (JSpinner.NumberEditor) intervalSpinner.getEditor();
         intervalEditor.getTextField().setColumns(intervalColumns);
 
+        gc.gridx = 2;
+        params.add(watchCheck, gc);
+        watchCheck.setToolTipText("新图片落盘后立即处理；对账扫描改用 inspection.watchReconcileSeconds 的长间隔");
+
         // 顶部按钮区
         JPanel topButtons = new JPanel(new FlowLayout(FlowLayout.LEFT));
         topButtons.add(startBtn);
         topButtons.add(stopBtn);
         stopBtn.setEnabled(false);
+        topButtons.add(Box.createHorizontalStrut(16));
+        topButtons.add(transportStatus);
+        topButtons.add(Box.createHorizontalStrut(16));
+        topButtons.add(limiterStatus);
+        refreshTransportStatus();
+        transportTimer.start();
 
         JPanel paramBorder = new JPanel(new BorderLayout());
         paramBorder.setBorder(new TitledBorder("任务参数设置"));
         paramBorder.add(params, BorderLayout.CENTER);
-        paramBorder.add(topButtons, BorderLayout.SOUTH);
+        JPanel metricsRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        metricsRow.add(metricsStatus);
+        JPanel statusRows = new JPanel(new BorderLayout());
+        statusRows.add(topButtons, BorderLayout.NORTH);
+        statusRows.add(metricsRow, BorderLayout.SOUTH);
+        paramBorder.add(statusRows, BorderLayout.SOUTH);
 
         // 日志区域：只读 + 命名为 logArea 便于外层主题识别
         processLogArea.setEditable(false);
         processLogArea.setName("logArea");
 
         JScrollPane processLogScroll = new JScrollPane(processLogArea);
-        processLogScroll.setBorder(new TitledBorder("处理日志"));
+        processLogScroll.setBorder(logBorder);
 
         // 历史过滤区
         JPanel historyFilter = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
@@ -143,17 +180,29 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
         historyFilter.add(toDateSpinner);
         JButton refreshHistory = new JButton("刷新历史");
         historyFilter.add(refreshHistory);
+        historyFilter.add(thumbnailStats);
         refreshHistory.addActionListener(e -> refreshHistory());
 
         // 历史表格
-        historyTable.setRowHeight(80);
-        historyTable.setAutoCreateRowSorter(true);
+        historyTable.setRowHeight(THUMB_HEIGHT);
+        historyTable.setDefaultRenderer(Path.class, new ThumbnailRenderer(thumbnailStore, THUMB_WIDTH, THUMB_HEIGHT));
+        historyTable.setDefaultRenderer(Long.class, new TimeRenderer());
+        // 按预先算好的键排序：文件名按字符串自然序（不走 Collator），时间按毫秒数
+        TableRowSorter<HistoryTableModel> historySorter = new TableRowSorter<>(historyTableModel);
+        historySorter.setComparator(0, java.util.Comparator.naturalOrder());
+        historySorter.setSortable(2, false);
+        historyTable.setRowSorter(historySorter);
         historyTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         historyTable.setShowGrid(true);
         historyTable.setGridColor(Color.LIGHT_GRAY);
         historyTable.setIntercellSpacing(new Dimension(1, 1));
 
         JScrollPane historyScroll = new JScrollPane(historyTable);
+        // 可视区变化（滚动、缩放、数据变化）后稍作合并，再按可视区预取缩略图
+        thumbnailPrefetch.setRepeats(false);
+        historyMerge.setRepeats(false);
+        historyScroll.getViewport().addChangeListener(e -> thumbnailPrefetch.restart());
+        historyTableModel.addTableModelListener(e -> thumbnailPrefetch.restart());
         historyScroll.setBorder(new TitledBorder("历史处理记录"));
         historyPanel.add(historyFilter, BorderLayout.NORTH);
         historyPanel.add(historyScroll, BorderLayout.CENTER);
@@ -196,6 +245,10 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
         styleButton(stopBtn, palette);
         styleButton(groupByDay, palette);
         styleButton(groupByRange, palette);
+        styleButton(watchCheck, palette);
+        transportStatus.setForeground(palette.text());
+        limiterStatus.setForeground(palette.text());
+        thumbnailStats.setForeground(palette.text());
 
         processLogArea.setBackground(palette.panel());
         processLogArea.setForeground(palette.text());
@@ -233,10 +286,86 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
                 BorderFactory.createLineBorder(palette.accent().darker()));
     }
 
+    /** 共享 HTTP 连接池状态与各后端调用的自适应并发上限。 */
+    private void refreshTransportStatus() {
+        HttpTransport transport = HttpTransport.shared();
+        HttpTransport.PoolStats s = transport.stats();
+        transportStatus.setText(String.format("连接池：活动 %d / 空闲 %d，复用率 %.0f%%，执行中 %d，排队 %d",
+                s.activeConnections(), s.idleConnections(), s.reuseRatio() * 100,
+                s.runningCalls(), s.queuedCalls()));
+        StringBuilder sb = new StringBuilder();
+        for (AdaptiveLimiter.Snapshot l : transport.limiterSnapshots()) {
+            sb.append(sb.isEmpty() ? "限流：" : "；")
+                    .append(l.name()).append(' ').append(l.inFlight()).append('/').append(l.limit())
+                    .append("，").append(l.latencyMillis()).append(" ms，拒绝 ").append(l.rejected());
+        }
+        if (service != null && service.isRunning()) {
+            SmartInspectionService.IngestLatency ingest = service.ingestLatency();
+            if (ingest.samples() > 0) {
+                sb.append(sb.isEmpty() ? "" : "；")
+                        .append(String.format("发现至上传：平均 %.0f ms，最近 %d ms，最大 %d ms（%d 张）",
+                                ingest.averageMillis(), ingest.lastMillis(), ingest.maxMillis(), ingest.samples()));
+            }
+        }
+        limiterStatus.setText(sb.isEmpty() ? " " : sb.toString());
+        refreshCallMetrics(transport.metricsSnapshots());
+        refreshEventCounts();
+    }
+
+    /** 各类后端调用的总耗时 p50/p95/p99 与错误数；悬停显示建连、首字节与字节数明细。 */
+    private void refreshCallMetrics(List<CallMetrics.Snapshot> snapshots) {
+        StringBuilder text = new StringBuilder();
+        StringBuilder tip = new StringBuilder("<html>");
+        for (CallMetrics.Snapshot m : snapshots) {
+            if (m.calls() == 0) {
+                continue;
+            }
+            text.append(text.isEmpty() ? "耗时 p50/p95/p99：" : "；")
+                    .append(m.name()).append(' ').append(percentiles(m.total()))
+                    .append("，错误 ").append(m.errors());
+            tip.append("<b>").append(m.name()).append("</b> 调用 ").append(m.calls())
+                    .append("，建连 ").append(percentiles(m.connect()))
+                    .append("，首字节 ").append(percentiles(m.ttfb()))
+                    .append("，总耗时 ").append(percentiles(m.total()))
+                    .append("，发送 ").append(m.requestBytes() / 1024).append(" KB，接收 ")
+                    .append(m.responseBytes() / 1024).append(" KB");
+            for (CallMetrics.ErrorClass e : CallMetrics.ErrorClass.values()) {
+                if (m.errors(e) > 0) {
+                    tip.append("，").append(e).append(' ').append(m.errors(e));
+                }
+            }
+            tip.append("<br>");
+        }
+        metricsStatus.setText(text.isEmpty() ? " " : text.toString());
+        metricsStatus.setToolTipText(text.isEmpty() ? null : tip.append("</html>").toString());
+    }
+
+    private static String percentiles(LogLinearHistogram.Snapshot h) {
+        return h.count() == 0 ? "-" : (h.valueAt(0.50) / 1000) + "/" + (h.valueAt(0.95) / 1000) + "/"
+                + (h.valueAt(0.99) / 1000) + " ms";
+    }
+
+    /** 日志标题栏显示按事件类型累计的识别、归档、警告与失败数。 */
+    private void refreshEventCounts() {
+        long completed = logSink.count(InspectionEvent.Type.COMPLETED);
+        long archived = logSink.count(InspectionEvent.Type.ARCHIVED);
+        long warned = logSink.count(Severity.WARN);
+        long failed = logSink.count(Severity.ERROR);
+        String title = completed + archived + warned + failed == 0 ? "处理日志"
+                : "处理日志（识别 " + completed + " · 归档 " + archived + " · 警告 " + warned + " · 失败 " + failed + "）";
+        if (!title.equals(logBorder.getTitle())) {
+            logBorder.setTitle(title);
+            if (processLogArea.getParent() instanceof JViewport viewport) {
+                viewport.getParent().repaint();
+            }
+        }
+    }
+
     public void onShow() {
         refreshHistory();
     }
 
+    /** 退出程序时调用：同步等待进行中的照片推进到下一阶段，保证工作队列日志完整。 */
     public void stopService() {
         if (service != null && service.isRunning()) {
             service.stop();
@@ -259,24 +388,48 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
                 ((Number) intervalSpinner.getValue()).longValue(),
                 appSettings.apiToken(),
                 appSettings.uploadUrl(),
-                appSettings.completionUrl()
+                appSettings.completionUrl(),
+                appSettings.inspectionUploadWorkers(),
+                appSettings.inspectionCompletionWorkers(),
+                appSettings.inspectionQueueCapacity(),
+                watchCheck.isSelected(),
+                appSettings.inspectionWatchSettleMillis(),
+                appSettings.inspectionWatchReconcileSeconds(),
+                appSettings.inspectionUploadCacheMaxEntries(),
+                appSettings.inspectionUploadCacheTtlHours(),
+                appSettings.inspectionDownscaleEnabled(),
+                appSettings.inspectionDownscaleMaxEdge(),
+                appSettings.inspectionDownscaleQuality(),
+                appSettings.inspectionBatchSize(),
+                appSettings.inspectionBatchLingerMillis(),
+                appSettings.inspectionStopDrainSeconds(),
+                appSettings.historyCompactAfterDays(),
+                appSettings.historyRetentionDays(),
+                appSettings.historyCompactMaxMbPerSecond() << 20
         );
         persistPrefs(config);
-        log("==============================");
-        log("准备启动: " + config.folder());
+        note(Severity.NOTICE, "==============================");
+        note(Severity.NOTICE, "准备启动: " + config.folder());
         service = new SmartInspectionService(this);
         service.start(config);
         startBtn.setEnabled(false);
         stopBtn.setEnabled(true);
     }
 
+    /** 停止时要等进行中的照片推进到下一阶段，放到后台线程执行，避免卡住界面。 */
     private void onStop() {
-        if (service != null) {
-            service.stop();
-        }
-        startBtn.setEnabled(true);
+        SmartInspectionService running = service;
+        startBtn.setEnabled(false);
         stopBtn.setEnabled(false);
-        log("智能点检已停止");
+        Thread.ofVirtual().name("smart-inspection-stop").start(() -> {
+            if (running != null) {
+                running.stop();
+            }
+            SwingUtilities.invokeLater(() -> {
+                startBtn.setEnabled(true);
+                stopBtn.setEnabled(false);
+            });
+        });
     }
 
     private void chooseFolder() {
@@ -291,81 +444,16 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
 
     @Override
     public void log(String message) {
-        SwingUtilities.invokeLater(() -> appendStyledLogLine(message));
+        logSink.append(InspectionEvent.note(Stage.LIFECYCLE, Severity.INFO, message == null ? "" : message));
     }
 
-    private void appendStyledLogLine(String message) {
-        StyledDocument doc = processLogArea.getStyledDocument();
-        int baseSize = processLogArea.getFont().getSize();
-
-        String ts = logTsFormat.format(new Date());
-
-        // 时间戳样式
-        SimpleAttributeSet tsAttrs = new SimpleAttributeSet();
-        StyleConstants.setForeground(tsAttrs, LOG_TS_COLOR);
-        StyleConstants.setFontSize(tsAttrs, baseSize);
-
-        // 文本样式：根据内容分类着色
-        SimpleAttributeSet msgAttrs = styleForMessage(message, baseSize);
-
-        try {
-            doc.insertString(doc.getLength(), ts + " - ", tsAttrs);
-            doc.insertString(doc.getLength(), message + "\n", msgAttrs);
-            processLogArea.setCaretPosition(doc.getLength());
-        } catch (BadLocationException ignored) {
-        }
+    @Override
+    public void event(InspectionEvent event) {
+        logSink.append(event);
     }
 
-    private SimpleAttributeSet styleForMessage(String msg, int baseSize) {
-        SimpleAttributeSet attrs = new SimpleAttributeSet();
-        StyleConstants.setFontSize(attrs, baseSize);
-
-        String m = msg == null ? "" : msg;
-
-        // 分隔行或明显阶段标记
-        if (m.startsWith("=") || m.contains("准备启动") || m.contains("停止")) {
-            StyleConstants.setForeground(attrs, LOG_HEADER_COLOR);
-            StyleConstants.setBold(attrs, true);
-            return attrs;
-        }
-
-        // 成功类
-        if (m.contains("识别完成") ||
-                m.contains("结果已") ||
-                m.contains("处理已结束") ||
-                m.contains("点检结果") ||
-                m.contains("已提交")) {
-            StyleConstants.setForeground(attrs, LOG_SUCCESS_COLOR);
-            StyleConstants.setBold(attrs, true);
-            return attrs;
-        }
-
-        // 错误 / 异常 / 失败 / 超时
-        if (m.contains("错误") ||
-                m.contains("异常") ||
-                m.contains("失败") ||
-                m.contains("超时")) {
-            StyleConstants.setForeground(attrs, LOG_ERROR_COLOR);
-            StyleConstants.setBold(attrs, true);
-            return attrs;
-        }
-
-        // 过程信息：扫描、发现图片、上传、平台处理中……
-        if (m.contains("扫描目录") ||
-                m.contains("当前智能点检") ||
-                m.contains("发现图片") ||
-                m.contains("发现新图片") ||
-                m.contains("正在上传") ||
-                m.contains("正在进行人脸识别") ||
-                m.contains("正在进行人脸识别处理") ||
-                m.contains("正在进行智能点检")) {
-            StyleConstants.setForeground(attrs, LOG_NORMAL_COLOR);
-            return attrs;
-        }
-
-        // 其余普通信息
-        StyleConstants.setForeground(attrs, LOG_NORMAL_COLOR);
-        return attrs;
+    private void note(Severity severity, String message) {
+        logSink.append(InspectionEvent.note(Stage.LIFECYCLE, severity, message));
     }
 
     @Override
@@ -373,12 +461,44 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
         SwingUtilities.invokeLater(this::refreshHistory);
     }
 
+    /** 新归档的照片先排队，由合并定时器每 {@value #HISTORY_MERGE_MILLIS} ms 最多并入表格一次。 */
+    @Override
+    public void historyChanged(java.nio.file.Path historyDir, HistoryIndex.HistoryRecord record) {
+        appendedHistory.add(record);
+        SwingUtilities.invokeLater(() -> {
+            if (!historyMerge.isRunning()) {
+                historyMerge.start();
+            }
+        });
+    }
+
+    /**
+     * 把排队的新归档并入表格：只保留落在当前筛选范围内、且属于当前目录的记录，按时间插入，
+     * 已加载的行与缩略图保持不动。整页读取尚未结束时推迟到读取完成之后。
+     */
+    private void mergeAppendedHistory() {
+        if (historyLoader != null && !historyLoader.isDone()) {
+            historyMerge.restart();
+            return;
+        }
+        java.util.List<HistoryRow> rows = new java.util.ArrayList<>();
+        HistoryIndex.HistoryRecord r;
+        while ((r = appendedHistory.poll()) != null) {
+            if (historyDir != null && r.archivePath().toAbsolutePath().normalize().startsWith(historyDir)
+                    && r.archivedMillis() >= historyFrom && r.archivedMillis() <= historyTo) {
+                rows.add(new HistoryRow(r.archivePath(), r.archivedMillis()));
+            }
+        }
+        historyTableModel.merge(rows);
+    }
+
     // =============== 以下保持你原来的历史记录逻辑 ==============
 
     private void loadPrefs() {
         folderField.setText(
                 prefs.get(KEY_FOLDER, System.getProperty("user.home", "")));
         intervalSpinner.setValue(prefs.getLong(KEY_INTERVAL, 60));
+        watchCheck.setSelected(prefs.getBoolean(KEY_WATCH, true));
         setDateToStartOfDay(fromDateSpinner, new Date());
         setDateToEndOfDay(toDateSpinner, new Date());
         setDateToStartOfDay(daySpinner, new Date());
@@ -389,6 +509,7 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
     private void persistPrefs(SmartInspectionConfig cfg) {
         prefs.put(KEY_FOLDER, cfg.folder());
         prefs.putLong(KEY_INTERVAL, cfg.intervalSeconds());
+        prefs.putBoolean(KEY_WATCH, cfg.watchFolder());
     }
 
     private JSpinner createDateSpinner() {
@@ -401,23 +522,85 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
         return spinner;
     }
 
+    /** 在后台按页读取历史索引，逐页追加到表格；再次刷新会取消尚未读完的上一次。 */
     public void refreshHistory() {
+        if (historyLoader != null) {
+            historyLoader.cancel(false);
+            historyLoader = null;
+        }
+        thumbnailLoader.cancelAll();
         historyTableModel.clear();
+        // 整页读取会包含此前排队的新归档
+        appendedHistory.clear();
+        historyDir = null;
         String folder = folderField.getText().trim();
         if (folder.isEmpty()) {
             return;
         }
         Path history = Path.of(folder).resolve("his");
+        thumbnailLoader.cache(ThumbnailCache.forHistory(history));
         DateRange range = currentRange();
-        try {
+        historyDir = history.toAbsolutePath().normalize();
+        historyFrom = range.start().getTime();
+        historyTo = range.end().getTime();
+        historyLoader = new HistoryLoader(history, historyFrom, historyTo);
+        historyLoader.execute();
+    }
+
+    private final class HistoryLoader extends SwingWorker<Integer, java.util.List<HistoryRow>> {
+        private final Path history;
+        private final long from;
+        private final long to;
+
+        HistoryLoader(Path history, long from, long to) {
+            this.history = history;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer doInBackground() throws IOException {
             if (!Files.exists(history)) {
+                return 0;
+            }
+            int[] count = {0};
+            HistoryIndex.forHistory(history).scan(from, to, HISTORY_PAGE_SIZE, page -> {
+                if (isCancelled()) {
+                    return false;
+                }
+                java.util.List<HistoryRow> rows = new java.util.ArrayList<>(page.size());
+                for (HistoryIndex.HistoryRecord r : page) {
+                    rows.add(new HistoryRow(r.archivePath(), r.archivedMillis()));
+                }
+                publish(rows);
+                count[0] += rows.size();
+                return true;
+            });
+            return count[0];
+        }
+
+        @Override
+        protected void process(java.util.List<java.util.List<HistoryRow>> pages) {
+            if (historyLoader != this) {
+                return;
+            }
+            for (java.util.List<HistoryRow> page : pages) {
+                historyTableModel.addAll(page);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
                 return;
             }
-            Files.list(history)
-                    .filter(Files::isRegularFile)
-                    .forEach(p -> addIfInRange(p, range));
-        } catch (IOException e) {
-            log("读取历史失败：" + e.getMessage());
+            try {
+                get();
+            } catch (java.util.concurrent.ExecutionException e) {
+                note(Severity.ERROR, "读取历史失败：" + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
@@ -480,18 +663,6 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
         return cal.getTime();
     }
 
-    private void addIfInRange(Path p, DateRange range) {
-        try {
-            long mod = Files.getLastModifiedTime(p).toMillis();
-            if (mod >= range.start().getTime() &&
-                    mod <= range.end().getTime()) {
-                historyTableModel.add(new HistoryRow(p));
-            }
-        } catch (IOException e) {
-            // 忽略单个文件错误，继续加载
-        }
-    }
-
     private void openSelectedImage() {
         int viewRow = historyTable.getSelectedRow();
         if (viewRow < 0) return;
@@ -499,7 +670,7 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
         HistoryRow row = historyTableModel.get(modelRow);
         try {
             if (Desktop.isDesktopSupported()) {
-                Desktop.getDesktop().open(row.path().toFile());
+                Desktop.getDesktop().open(HistoryIndex.localFile(row.path()).toFile());
             } else {
                 JOptionPane.showMessageDialog(this, "当前环境不支持直接打开文件。");
             }
@@ -508,47 +679,84 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
         }
     }
 
+    /** 可视区内的行优先，其次是上下各一屏的行；其余排队中的缩略图任务取消。 */
+    private void prefetchVisibleThumbnails() {
+        int rowCount = historyTable.getRowCount();
+        if (rowCount == 0) {
+            thumbnailLoader.cancelAll();
+            return;
+        }
+        Rectangle visible = historyTable.getVisibleRect();
+        int first = historyTable.rowAtPoint(new Point(0, visible.y));
+        int last = historyTable.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+        first = first < 0 ? 0 : first;
+        last = last < 0 ? rowCount - 1 : last;
+        int margin = last - first + 1;
+        java.util.List<Path> wanted = new java.util.ArrayList<>();
+        collectMissingThumbnails(first, last, wanted);
+        collectMissingThumbnails(last + 1, Math.min(rowCount - 1, last + margin), wanted);
+        collectMissingThumbnails(Math.max(0, first - margin), first - 1, wanted);
+        thumbnailLoader.retain(wanted);
+    }
+
+    private void collectMissingThumbnails(int fromViewRow, int toViewRow, java.util.List<Path> out) {
+        for (int viewRow = fromViewRow; viewRow <= toViewRow; viewRow++) {
+            HistoryRow row = historyTableModel.get(historyTable.convertRowIndexToModel(viewRow));
+            if (!thumbnailStore.contains(row.path())) {
+                out.add(row.path());
+            }
+        }
+    }
+
+    private void onThumbnailLoaded(Path path, int[] raster) {
+        int modelRow = historyTableModel.indexOf(path);
+        if (modelRow < 0) {
+            return;
+        }
+        thumbnailStore.put(path, raster);
+        historyTableModel.fireTableCellUpdated(modelRow, 2);
+        ThumbnailCache cache = thumbnailLoader.cache();
+        if (cache != null) {
+            ThumbnailCache.Stats s = cache.stats();
+            thumbnailStats.setText(String.format("缩略图缓存命中 %.0f%%（%d/%d），平均解码 %.1f ms，内存 %.1f/%d MB",
+                    s.hitRate() * 100, s.hits(), s.hits() + s.misses(), s.averageDecodeMillis(),
+                    thumbnailStore.usedBytes() / 1048576.0, thumbnailStore.budgetBytes() >> 20));
+        }
+    }
+
     private record DateRange(Date start, Date end) {}
 
+    /** 一行历史记录；文件名与时间键在构造时算好，排序时直接比较。 */
     private static class HistoryRow {
         private final Path path;
-        private final Date time;
-        private ImageIcon thumbnail;
-        private boolean thumbnailLoaded;
+        private final String fileName;
+        private final Long time;
 
-        HistoryRow(Path path) throws IOException {
+        HistoryRow(Path path, long timeMillis) {
             this.path = path;
-            this.time = new Date(Files.getLastModifiedTime(path).toMillis());
+            this.fileName = path.getFileName().toString();
+            this.time = timeMillis;
         }
 
         Path path() { return path; }
 
-        Date time() { return time; }
+        Long time() { return time; }
 
-        ImageIcon thumbnail() {
-            if (!thumbnailLoaded) {
-                thumbnail = createThumb(path);
-                thumbnailLoaded = true;
-            }
-            return thumbnail;
-        }
+        String fileName() { return fileName; }
+    }
 
-        String fileName() { return path.getFileName().toString(); }
+    /** 时间列的值是毫秒数，只在绘制时格式化。 */
+    private static class TimeRenderer extends javax.swing.table.DefaultTableCellRenderer {
+        private final SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        private final Date date = new Date();
 
-        private ImageIcon createThumb(Path p) {
-            try {
-                java.awt.image.BufferedImage img =
-                        javax.imageio.ImageIO.read(p.toFile());
-                if (img == null) {
-                    return new ImageIcon();
-                }
-                int targetW = 120;
-                int targetH = 80;
-                Image scaled = img.getScaledInstance(
-                        targetW, targetH, Image.SCALE_SMOOTH);
-                return new ImageIcon(scaled);
-            } catch (IOException e) {
-                return new ImageIcon();
+        @Override
+        protected void setValue(Object value) {
+            if (value instanceof Long millis) {
+                date.setTime(millis);
+                setText(fmt.format(date));
+            } else {
+                super.setValue(value);
             }
         }
     }
@@ -556,9 +764,8 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
     private static class HistoryTableModel extends AbstractTableModel {
         private final java.util.List<HistoryRow> rows =
                 new java.util.ArrayList<>();
+        private final java.util.Map<Path, Integer> indexByPath = new java.util.HashMap<>();
         private final String[] cols = {"文件名", "扫描时间", "缩略图"};
-        private final SimpleDateFormat fmt =
-                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
         @Override
         public int getRowCount() { return rows.size(); }
@@ -571,8 +778,11 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
 
         @Override
         public Class<?> getColumnClass(int columnIndex) {
-            if (columnIndex == 2) return ImageIcon.class;
-            return String.class;
+            return switch (columnIndex) {
+                case 1 -> Long.class;
+                case 2 -> Path.class;
+                default -> String.class;
+            };
         }
 
         @Override
@@ -580,22 +790,69 @@ public class SmartInspectionPanel extends JPanel implements SmartInspectionLogge
             HistoryRow row = rows.get(rowIndex);
             return switch (columnIndex) {
                 case 0 -> row.fileName();
-                case 1 -> fmt.format(row.time());
-                case 2 -> row.thumbnail();
+                case 1 -> row.time();
+                case 2 -> row.path();
                 default -> "";
             };
         }
 
-        void add(HistoryRow row) {
-            rows.add(row);
-            fireTableDataChanged();
+        /** 一批行追加到末尾（已存在的跳过），只发一次插入事件。 */
+        void addAll(java.util.List<HistoryRow> batch) {
+            int first = rows.size();
+            for (HistoryRow row : batch) {
+                if (!indexByPath.containsKey(row.path())) {
+                    indexByPath.put(row.path(), rows.size());
+                    rows.add(row);
+                }
+            }
+            if (rows.size() > first) {
+                fireTableRowsInserted(first, rows.size() - 1);
+            }
+        }
+
+        /**
+         * 按时间升序并入若干行：不早于最后一行的直接追加（常见情况），否则二分插入到对应位置。
+         */
+        void merge(java.util.List<HistoryRow> batch) {
+            java.util.List<HistoryRow> sorted = new java.util.ArrayList<>(batch);
+            sorted.sort(java.util.Comparator.comparing(HistoryRow::time));
+            int tail = 0;
+            while (tail < sorted.size() && !rows.isEmpty()
+                    && sorted.get(tail).time() < rows.get(rows.size() - 1).time()) {
+                insertSorted(sorted.get(tail++));
+            }
+            addAll(sorted.subList(tail, sorted.size()));
+        }
+
+        private void insertSorted(HistoryRow row) {
+            if (indexByPath.containsKey(row.path())) {
+                return;
+            }
+            int lo = 0;
+            int hi = rows.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (rows.get(mid).time() <= row.time()) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            rows.add(lo, row);
+            for (int i = lo; i < rows.size(); i++) {
+                indexByPath.put(rows.get(i).path(), i);
+            }
+            fireTableRowsInserted(lo, lo);
         }
 
         void clear() {
             rows.clear();
+            indexByPath.clear();
             fireTableDataChanged();
         }
 
         HistoryRow get(int index) { return rows.get(index); }
+
+        int indexOf(Path path) { return indexByPath.getOrDefault(path, -1); }
     }
 }
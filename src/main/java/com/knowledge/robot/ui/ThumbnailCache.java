@@ -0,0 +1,168 @@
+package com.knowledge.robot.ui;
+
+import com.knowledge.robot.util.ImageScaling;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 历史缩略图的磁盘缓存，存放在 {@code his/.thumbs}，以“归档文件名 + 修改时间 + 大小 + 尺寸”为键
+ * （归档名带时间戳，迁移到日期分区目录后缓存依然有效），
+ * 每张缩略图一个文件：魔数、宽、高，随后是逐像素 RGB。命中时只需读一个几十 KB 的文件，
+ * 未命中时用 {@link ImageReadParam} 源采样跳过多余像素解码，再由 {@link ImageScaling} 缩放到目标尺寸。
+ */
+final class ThumbnailCache {
+    static final String THUMB_DIR = ".thumbs";
+    private static final int MAGIC = 0x54484D42; // "THMB"
+    private static final int HEADER_BYTES = 12;
+    private static final Map<Path, ThumbnailCache> SHARED = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+
+    record Stats(long hits, long misses, long decodeNanos) {
+        double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        /** 未命中时从原图解码生成缩略图的平均耗时 */
+        double averageDecodeMillis() {
+            return misses == 0 ? 0 : decodeNanos / 1_000_000.0 / misses;
+        }
+    }
+
+    private ThumbnailCache(Path dir) {
+        this.dir = dir;
+    }
+
+    /** 同一归档目录共用一个缓存实例（命中统计随之累计）。 */
+    static ThumbnailCache forHistory(Path historyDir) {
+        return SHARED.computeIfAbsent(historyDir.toAbsolutePath().normalize(),
+                d -> new ThumbnailCache(d.resolve(THUMB_DIR)));
+    }
+
+    Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), decodeNanos.sum());
+    }
+
+    /** 取缩略图：先读磁盘缓存，未命中则解码原图并写回缓存。无法解码时返回 null。 */
+    BufferedImage load(Path image, int width, int height) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(image, BasicFileAttributes.class);
+        Path file = dir.resolve(key(image, attrs, width, height) + ".thumb");
+        BufferedImage cached = read(file, width, height);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        long start = System.nanoTime();
+        BufferedImage thumb = decode(image, width, height);
+        decodeNanos.add(System.nanoTime() - start);
+        misses.increment();
+        if (thumb != null) {
+            write(file, thumb);
+        }
+        return thumb;
+    }
+
+    /** 按目标尺寸的两倍做源采样解码，再渐进缩放，避免把整幅大图读进内存。压缩段内的照片从流中读取。 */
+    static BufferedImage decode(Path image, int width, int height) throws IOException {
+        boolean local = image.getFileSystem() == FileSystems.getDefault();
+        try (InputStream raw = local ? null : Files.newInputStream(image);
+             ImageInputStream in = ImageIO.createImageInputStream(local ? image.toFile() : raw)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.min(w / (width * 2), h / (height * 2)));
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return ImageScaling.scaleTo(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage read(Path file, int width, int height) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (bytes.length != HEADER_BYTES + width * height * 3
+                || buf.getInt() != MAGIC || buf.getInt() != width || buf.getInt() != height) {
+            return null;
+        }
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        for (int i = 0, off = HEADER_BYTES; i < pixels.length; i++, off += 3) {
+            pixels[i] = (bytes[off] & 0xFF) << 16 | (bytes[off + 1] & 0xFF) << 8 | (bytes[off + 2] & 0xFF);
+        }
+        return img;
+    }
+
+    /** 先写临时文件再改名，并发生成同一张缩略图时互不破坏。 */
+    private void write(Path file, BufferedImage thumb) {
+        int w = thumb.getWidth();
+        int h = thumb.getHeight();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + w * h * 3);
+        buf.putInt(MAGIC).putInt(w).putInt(h);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int rgb = thumb.getRGB(x, y);
+                buf.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+            }
+        }
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "thumb", ".tmp");
+            Files.write(tmp, buf.array());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ignored) {
+            // 缓存写入失败只影响下次打开的速度
+        }
+    }
+
+    /** 文件名、修改时间、大小与尺寸的 64 位 FNV-1a 指纹。 */
+    private static String key(Path image, BasicFileAttributes attrs, int width, int height) {
+        String s = image.getFileName() + "|" + attrs.lastModifiedTime().toMillis()
+                + "|" + attrs.size() + "|" + width + "x" + height;
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return Long.toHexString(h);
+    }
+}
@@ -0,0 +1,118 @@
+package com.knowledge.robot.ui;
+
+import com.knowledge.robot.inspection.HistoryIndex;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.BiConsumer;
+
+/**
+ * 历史表格缩略图的后台解码器：读缓存或解码缩放在独立的平台线程池中进行（CPU 密集），完成后在 EDT 上回调像素。
+ * <p>
+ * 调用方在 EDT 上通过 {@link #retain} 给出当前需要的图片（可视区及其前后若干行，按优先顺序），
+ * 不再需要的排队任务会被取消，滚动过去的行不会继续占用解码线程。
+ */
+final class ThumbnailLoader {
+    private static final int DECODERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final int width;
+    private final int height;
+    private final BiConsumer<Path, int[]> onLoaded;
+    private final ExecutorService pool = Executors.newFixedThreadPool(DECODERS,
+            Thread.ofPlatform().daemon().name("history-thumb-", 0).factory());
+    /** 已提交未完成的任务，只在 EDT 上访问 */
+    private final Map<Path, Future<?>> pending = new HashMap<>();
+    private volatile ThumbnailCache cache;
+
+    ThumbnailLoader(int width, int height, BiConsumer<Path, int[]> onLoaded) {
+        this.width = width;
+        this.height = height;
+        this.onLoaded = onLoaded;
+    }
+
+    /** 切换归档目录时换用对应的磁盘缓存；为 null 时直接解码。 */
+    void cache(ThumbnailCache cache) {
+        this.cache = cache;
+    }
+
+    ThumbnailCache cache() {
+        return cache;
+    }
+
+    /** 只保留 {@code wanted} 中的图片：取消其余排队任务，并按给定顺序提交尚未提交的图片。 */
+    void retain(Collection<Path> wanted) {
+        Set<Path> keep = new LinkedHashSet<>(wanted);
+        Iterator<Map.Entry<Path, Future<?>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Future<?>> e = it.next();
+            if (!keep.contains(e.getKey())) {
+                e.getValue().cancel(false);
+                it.remove();
+            }
+        }
+        for (Path p : keep) {
+            if (!pending.containsKey(p)) {
+                Load task = new Load(p);
+                pending.put(p, task);
+                pool.execute(task);
+            }
+        }
+    }
+
+    void cancelAll() {
+        retain(List.of());
+    }
+
+    /**
+     * 一张图片的解码任务。解码中途被 {@link #retain} 取消的任务不再回调；回到 EDT 后只移除自己的登记，
+     * 同一路径此后重新提交的任务仍留在 {@link #pending} 中，不会被重复提交。
+     */
+    private final class Load extends FutureTask<int[]> {
+        private final Path path;
+
+        Load(Path path) {
+            super(() -> decode(path));
+            this.path = path;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            int[] raster = state() == State.SUCCESS ? resultNow() : ThumbnailStore.UNREADABLE;
+            SwingUtilities.invokeLater(() -> {
+                pending.remove(path, this);
+                onLoaded.accept(path, raster);
+            });
+        }
+    }
+
+    /** 返回 宽 × 高 的 0xRRGGBB 像素；无法解码时返回 {@link ThumbnailStore#UNREADABLE}。 */
+    private int[] decode(Path p) {
+        try {
+            ThumbnailCache c = cache;
+            BufferedImage img = HistoryIndex.readArchived(p, file -> c != null
+                    ? c.load(file, width, height) : ThumbnailCache.decode(file, width, height));
+            if (img == null) {
+                return ThumbnailStore.UNREADABLE;
+            }
+            return img.getRGB(0, 0, width, height, null, 0, width);
+        } catch (IOException e) {
+            return ThumbnailStore.UNREADABLE;
+        }
+    }
+}
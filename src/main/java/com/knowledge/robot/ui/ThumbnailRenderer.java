@@ -0,0 +1,63 @@
+package com.knowledge.robot.ui;
+
+import javax.swing.*;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.file.Path;
+
+/**
+ * 缩略图列渲染器：单元格值为图片路径，像素从 {@link ThumbnailStore} 取出后复制进一张复用的画布再绘制，
+ * 不为每行创建图像对象。尚未加载的行绘制半透明占位块。
+ */
+final class ThumbnailRenderer extends JComponent implements TableCellRenderer {
+    private static final Color PLACEHOLDER = new Color(128, 128, 128, 60);
+
+    private final ThumbnailStore store;
+    private final BufferedImage canvas;
+    private final int[] canvasPixels;
+    private boolean selected;
+    private Color selectionBackground;
+    /** 0 = 未加载，1 = 有像素，-1 = 无法解码 */
+    private int state;
+
+    ThumbnailRenderer(ThumbnailStore store, int width, int height) {
+        this.store = store;
+        this.canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.canvasPixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        int[] raster = value instanceof Path p ? store.get(p) : null;
+        if (raster == null) {
+            state = 0;
+        } else if (raster.length != canvasPixels.length) {
+            state = -1;
+        } else {
+            System.arraycopy(raster, 0, canvasPixels, 0, raster.length);
+            state = 1;
+        }
+        selected = isSelected;
+        selectionBackground = table.getSelectionBackground();
+        return this;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (selected) {
+            g.setColor(selectionBackground);
+            g.fillRect(0, 0, getWidth(), getHeight());
+        }
+        int x = Math.max(0, (getWidth() - canvas.getWidth()) / 2);
+        int y = Math.max(0, (getHeight() - canvas.getHeight()) / 2);
+        if (state == 1) {
+            g.drawImage(canvas, x, y, null);
+        } else if (state == 0) {
+            g.setColor(PLACEHOLDER);
+            g.fillRect(x, y, canvas.getWidth(), canvas.getHeight());
+        }
+    }
+}
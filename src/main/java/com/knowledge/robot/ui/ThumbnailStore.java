@@ -0,0 +1,77 @@
+package com.knowledge.robot.ui;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按内存预算保存历史缩略图像素：每张缩略图是一个紧凑的 {@code int[]}（0xRRGGBB，宽 × 高），
+ * 不再持有 {@code ImageIcon}/原图引用。总字节数超过预算时按最近最少使用淘汰，
+ * 被淘汰的行重新进入可视区时由磁盘缓存快速补回，因此列出多少历史行堆内存都保持平稳。
+ * 只在 EDT 上访问。
+ */
+final class ThumbnailStore {
+    /** 无法解码的图片，占位避免反复重试 */
+    static final int[] UNREADABLE = new int[0];
+
+    private final long budgetBytes;
+    private final LinkedHashMap<Path, int[]> pixels = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+    private long evictions;
+
+    ThumbnailStore(long budgetBytes) {
+        this.budgetBytes = Math.max(1L << 20, budgetBytes);
+    }
+
+    int[] get(Path path) {
+        return pixels.get(path);
+    }
+
+    boolean contains(Path path) {
+        return pixels.containsKey(path);
+    }
+
+    void put(Path path, int[] raster) {
+        int[] prev = pixels.put(path, raster);
+        if (prev != null) {
+            usedBytes -= bytes(prev);
+        }
+        usedBytes += bytes(raster);
+        Iterator<Map.Entry<Path, int[]>> it = pixels.entrySet().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<Path, int[]> eldest = it.next();
+            if (eldest.getKey().equals(path)) {
+                continue;
+            }
+            usedBytes -= bytes(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    void clear() {
+        pixels.clear();
+        usedBytes = 0;
+    }
+
+    int size() {
+        return pixels.size();
+    }
+
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    long budgetBytes() {
+        return budgetBytes;
+    }
+
+    long evictions() {
+        return evictions;
+    }
+
+    private static long bytes(int[] raster) {
+        return (long) raster.length * Integer.BYTES;
+    }
+}
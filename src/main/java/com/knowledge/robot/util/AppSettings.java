@@ -3,6 +3,12 @@ package com.knowledge.robot.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -36,6 +42,31 @@ public final class AppSettings {
         return props.getProperty("api.token", "").trim();
     }
 
+    /** Knowledge-service chat endpoint used by auto learning and the load generator. */
+    public String chatUrl() {
+        return props.getProperty("api.url", DEFAULT_COMPLETION_URL).trim();
+    }
+
+    /** Knowledge base ids sent as {@code refs} with every chat request. */
+    public List<Long> apiRefs() {
+        List<Long> refs = new ArrayList<>();
+        for (String part : props.getProperty("api.refs", "").split(",")) {
+            try {
+                if (!part.isBlank()) {
+                    refs.add(Long.parseLong(part.trim()));
+                }
+            } catch (NumberFormatException ignored) {
+                // skip malformed ids
+            }
+        }
+        return refs;
+    }
+
+    /** JSON object sent as {@code agentlink} with every chat request; empty when not configured. */
+    public String apiAgentLink() {
+        return props.getProperty("api.agentlink", "").trim();
+    }
+
     public String uploadUrl() {
         return props.getProperty("inspection.uploadUrl", DEFAULT_UPLOAD_URL).trim();
     }
@@ -47,4 +78,251 @@ public final class AppSettings {
         }
         return props.getProperty("api.url", DEFAULT_COMPLETION_URL).trim();
     }
+
+    /** Number of concurrent upload workers in the inspection pipeline. */
+    public int inspectionUploadWorkers() {
+        return intProperty("inspection.uploadWorkers", 4);
+    }
+
+    /** Number of concurrent completion workers in the inspection pipeline. */
+    public int inspectionCompletionWorkers() {
+        return intProperty("inspection.completionWorkers", 4);
+    }
+
+    /** Capacity of each bounded queue between inspection pipeline stages. */
+    public int inspectionQueueCapacity() {
+        return intProperty("inspection.queueCapacity", 32);
+    }
+
+    /** Quiet period after the last create/modify event before a watched file is picked up. */
+    public long inspectionWatchSettleMillis() {
+        return intProperty("inspection.watchSettleMillis", 300);
+    }
+
+    /**
+     * Reconciliation scan interval used while the folder is being watched; the watcher picks up
+     * new files immediately, so this only needs to catch missed events and can be much longer
+     * than the polling interval.
+     */
+    public long inspectionWatchReconcileSeconds() {
+        return intProperty("inspection.watchReconcileSeconds", 1800);
+    }
+
+    /** Maximum number of content-hash entries kept by the inspection upload cache. */
+    public int inspectionUploadCacheMaxEntries() {
+        return intProperty("inspection.uploadCacheMaxEntries", 10000);
+    }
+
+    /** How long an uploaded image's refId may be reused for identical content. */
+    public long inspectionUploadCacheTtlHours() {
+        return intProperty("inspection.uploadCacheTtlHours", 24);
+    }
+
+    /** Whether inspection images are downscaled and re-encoded as JPEG before upload. */
+    public boolean inspectionDownscaleEnabled() {
+        return Boolean.parseBoolean(props.getProperty("inspection.downscaleEnabled", "false").trim());
+    }
+
+    /** Longest edge, in pixels, of a downscaled inspection image. */
+    public int inspectionDownscaleMaxEdge() {
+        return intProperty("inspection.downscaleMaxEdge", 1920);
+    }
+
+    /** JPEG quality (0.1 - 1.0) used when re-encoding a downscaled inspection image. */
+    public float inspectionDownscaleQuality() {
+        String value = props.getProperty("inspection.downscaleQuality");
+        if (value == null || value.isBlank()) {
+            return 0.85f;
+        }
+        try {
+            return Float.parseFloat(value.trim());
+        } catch (NumberFormatException ex) {
+            return 0.85f;
+        }
+    }
+
+    /** Maximum number of images sent in one multipart upload / one completion call. */
+    public int inspectionBatchSize() {
+        return intProperty("inspection.batchSize", 1);
+    }
+
+    /** How long the upload stage waits for more images before sending a partial batch. */
+    public long inspectionBatchLingerMillis() {
+        return intProperty("inspection.batchLingerMillis", 200);
+    }
+
+    /** How long stopping the inspection task waits for in-progress photos to reach their next stage. */
+    public long inspectionStopDrainSeconds() {
+        return intProperty("inspection.stopDrainSeconds", 30);
+    }
+
+    /** Lines kept in the inspection process log; older lines are trimmed from the top. */
+    public int inspectionLogMaxLines() {
+        return intProperty("inspection.logMaxLines", 5000);
+    }
+
+    /** Pending log lines buffered between two repaints of the process log; overflow is counted and dropped. */
+    public int inspectionLogBufferSize() {
+        return intProperty("inspection.logBufferSize", 4096);
+    }
+
+    /** Memory budget, in MB, for decoded thumbnails kept by the history table. */
+    public long historyThumbnailBudgetMb() {
+        return intProperty("history.thumbnailBudgetMB", 48);
+    }
+
+    /** Archived days older than this are packed into compressed segments; 0 disables compaction. */
+    public int historyCompactAfterDays() {
+        return intProperty("history.compactAfterDays", 30);
+    }
+
+    /** Archived days older than this are deleted for good; 0 keeps history forever. */
+    public int historyRetentionDays() {
+        return intProperty("history.retentionDays", 365);
+    }
+
+    /** Disk throughput, in MB per second, the background compaction job may use. */
+    public long historyCompactMaxMbPerSecond() {
+        return intProperty("history.compactMaxMBps", 8);
+    }
+
+    /** Idle connections kept by the shared HTTP connection pool. */
+    public int httpMaxIdleConnections() {
+        return intProperty("http.maxIdleConnections", 16);
+    }
+
+    /** How long an idle pooled HTTP connection is kept alive. */
+    public long httpKeepAliveSeconds() {
+        return intProperty("http.keepAliveSeconds", 300);
+    }
+
+    /** Maximum HTTP calls in flight across all hosts; a call holds its slot until the response body is closed. */
+    public int httpMaxRequests() {
+        return intProperty("http.maxRequests", 64);
+    }
+
+    /** Maximum HTTP calls in flight to a single host; further calls queue before connecting. */
+    public int httpMaxRequestsPerHost() {
+        return intProperty("http.maxRequestsPerHost", 16);
+    }
+
+    /** Starting concurrency limit for each adaptive backend limiter. */
+    public int httpLimiterInitialLimit() {
+        return intProperty("http.limiter.initialLimit", 4);
+    }
+
+    /** Floor the adaptive limiter never shrinks below. */
+    public int httpLimiterMinLimit() {
+        return intProperty("http.limiter.minLimit", 1);
+    }
+
+    /** Ceiling the adaptive limiter never grows beyond. */
+    public int httpLimiterMaxLimit() {
+        return intProperty("http.limiter.maxLimit", 32);
+    }
+
+    /** How long a call waits for a free permit before it is rejected. */
+    public long httpLimiterMaxWaitSeconds() {
+        return intProperty("http.limiter.maxWaitSeconds", 120);
+    }
+
+    /** How often backend call metrics are appended to {@link #metricsCsvFile()}; 0 disables the export. */
+    public long metricsCsvIntervalSeconds() {
+        return intProperty("metrics.csvIntervalSeconds", 0);
+    }
+
+    /** CSV file receiving periodic backend call metrics. */
+    public Path metricsCsvFile() {
+        String value = props.getProperty("metrics.csvFile");
+        if (value == null || value.isBlank()) {
+            return Paths.get(System.getProperty("user.home"), ".knowledge_robot", "metrics.csv");
+        }
+        return Paths.get(value.trim());
+    }
+
+    /** UTF-8 question corpus, one {@code category<TAB>question} per line; built-in questions are used when absent. */
+    public Path questionCorpusFile() {
+        String value = props.getProperty("question.corpusFile");
+        if (value == null || value.isBlank()) {
+            return Paths.get(System.getProperty("user.home"), ".knowledge_robot", "questions.tsv");
+        }
+        return Paths.get(value.trim());
+    }
+
+    /** {@code question}: every corpus question equally likely; {@code category}: every selected category equally likely. */
+    public String questionSampling() {
+        return props.getProperty("question.sampling", "question").trim();
+    }
+
+    /** Per-category sampling multipliers, written as {@code category:weight,category:weight}. */
+    public Map<String, Double> questionCategoryWeights() {
+        Map<String, Double> weights = new HashMap<>();
+        for (String part : props.getProperty("question.categoryWeights", "").split(",")) {
+            int colon = part.lastIndexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            try {
+                weights.put(part.substring(0, colon).trim(), Double.parseDouble(part.substring(colon + 1).trim()));
+            } catch (NumberFormatException ignored) {
+                // skip malformed weights
+            }
+        }
+        return weights;
+    }
+
+    /** Minimum interval between two checks of the corpus file for changes. */
+    public long questionReloadCheckSeconds() {
+        return intProperty("question.reloadCheckSeconds", 5);
+    }
+
+    /** Concurrent virtual users in closed-model load runs. */
+    public int loadSessions() {
+        return intProperty("load.sessions", 8);
+    }
+
+    /** Chat arrivals per second in open-model load runs; 0 runs the closed model instead. */
+    public double loadArrivalsPerSecond() {
+        String value = props.getProperty("load.arrivalsPerSecond");
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /** Cap on chats in flight during an open-model run; later arrivals queue and their wait counts as latency. */
+    public int loadMaxInFlight() {
+        return intProperty("load.maxInFlight", 64);
+    }
+
+    /** Pause between two chats of one virtual user in closed-model runs. */
+    public long loadThinkMillis() {
+        return intProperty("load.thinkMillis", 0);
+    }
+
+    /** Length of a load run; 0 runs until stopped. */
+    public long loadDurationSeconds() {
+        return intProperty("load.durationSeconds", 0);
+    }
+
+    /** Interval between two live load reports. */
+    public long loadReportSeconds() {
+        return intProperty("load.reportSeconds", 5);
+    }
+
+    private int intProperty(String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
 }
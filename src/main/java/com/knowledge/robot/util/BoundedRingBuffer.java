@@ -0,0 +1,89 @@
+package com.knowledge.robot.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-capacity, lock-free multi-producer / single-consumer queue backed by a power-of-two ring.
+ * <p>
+ * Each slot carries a sequence number: producers claim a slot with one CAS on the tail and publish it
+ * by advancing the slot's sequence, so {@link #offer} never blocks and never allocates. When the ring is
+ * full the element is rejected instead of waiting, which keeps producers (worker threads) independent of
+ * how fast the single consumer drains. Only one thread may call {@link #poll} / {@link #drainTo}.
+ */
+public final class BoundedRingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public BoundedRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 30) - 1)) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /** Appends {@code value}; returns {@code false} without waiting when the ring is full. */
+    public boolean offer(T value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        while (true) {
+            long t = tail.get();
+            int index = (int) (t & mask);
+            long diff = sequences.get(index) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    items.lazySet(index, value);
+                    sequences.set(index, t + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /** Removes the oldest published element, or returns {@code null} if none is ready. Consumer thread only. */
+    public T poll() {
+        long h = head;
+        int index = (int) (h & mask);
+        if (sequences.get(index) != h + 1) {
+            return null;
+        }
+        T value = items.get(index);
+        items.lazySet(index, null);
+        sequences.set(index, h + mask + 1);
+        head = h + 1;
+        return value;
+    }
+
+    /** Hands up to {@code max} elements to {@code sink} in FIFO order and returns how many were drained. */
+    public int drainTo(Consumer<? super T> sink, int max) {
+        int n = 0;
+        T value;
+        while (n < max && (value = poll()) != null) {
+            sink.accept(value);
+            n++;
+        }
+        return n;
+    }
+
+    /** Approximate number of queued elements. */
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity(), tail.get() - head));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,120 @@
+package com.knowledge.robot.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁、固定内存的非负 {@code long} 值直方图（耗时以微秒、大小以字节记录）。
+ * <p>
+ * 分桶为对数-线性：小于 {@value #SUB_BUCKETS} 的值每个值一个桶，其上每个 2 的幂区间再等分为 {@value #SUB_BUCKETS} 个子桶，
+ * 因此在整个 {@code long} 范围内报告值与真实值的误差约在 6% 以内，全部放在一个 960 槽的数组里（约 7.5 KB）。
+ * 记录一次只需一次原子自增、一次分段累加，以及只在出现新最大值时才 CAS 的最大值更新，不分配内存；
+ * 分位数由 {@link #snapshot()} 计算，快照与并发写入之间不是原子的，但不会丢计数。
+ */
+public final class LogLinearHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        sum.add(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            // 重试直到 max 不小于 v
+        }
+    }
+
+    static int index(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /** 落入第 {@code i} 个桶的最小值。 */
+    static long lowerBound(int i) {
+        if (i < SUB_BUCKETS) {
+            return i;
+        }
+        int shift = i / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + i % SUB_BUCKETS) << shift;
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, sum.sum(), max.get());
+    }
+
+    /** 某一时刻的分桶副本；与更早的快照相减即可得到区间统计。 */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long c = 0;
+            for (long n : counts) {
+                c += n;
+            }
+            this.count = c;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long mean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /** 记录过的最大值；由 {@link #since} 得到的区间快照为其最高非空桶的上界。 */
+        public long max() {
+            return max;
+        }
+
+        /** 分位数 {@code q}（0 - 1）处的值：该排名所在桶的上界，不超过 {@link #max()}；没有记录时为 0。 */
+        public long valueAt(double q) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, q)) * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long upper = i + 1 < counts.length ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                    return Math.min(upper, max);
+                }
+            }
+            return max;
+        }
+
+        /** {@code earlier} 之后记录的值。 */
+        public Snapshot since(Snapshot earlier) {
+            long[] diff = new long[counts.length];
+            long intervalMax = 0;
+            for (int i = 0; i < diff.length; i++) {
+                diff[i] = counts[i] - earlier.counts[i];
+                if (diff[i] > 0) {
+                    intervalMax = i + 1 < diff.length ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                }
+            }
+            return new Snapshot(diff, sum - earlier.sum, Math.min(intervalMax, max));
+        }
+    }
+}
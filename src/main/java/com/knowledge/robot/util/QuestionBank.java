@@ -1,9 +1,19 @@
 package com.knowledge.robot.util;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * 自动对话的题库。{@link AppSettings#questionCorpusFile()} 指定的文件存在时，问题与分类都取自该文件（见 {@link QuestionCorpus}）；
+ * 最多每 {@link AppSettings#questionReloadCheckSeconds()} 秒检查一次，文件变化后在后台重新索引，新版本就绪前继续从旧版本抽题。
+ * 没有可用文件时使用内置列表。
+ */
 public final class QuestionBank {
 
     private static final List<String> CATEGORIES = List.of(
@@ -19,18 +29,80 @@ public final class QuestionBank {
             "近期有哪些行业热点？"
     );
 
+    private static final Path CORPUS_FILE = AppSettings.get().questionCorpusFile();
+    private static final long CHECK_INTERVAL_NANOS =
+            TimeUnit.SECONDS.toNanos(Math.max(1, AppSettings.get().questionReloadCheckSeconds()));
+    private static final AtomicBoolean RELOADING = new AtomicBoolean();
+    private static volatile QuestionCorpus corpus;
+    private static volatile boolean loaded;
+    private static volatile long nextCheckNanos;
+
     private QuestionBank() {
     }
 
     public static List<String> categories() {
-        return CATEGORIES;
+        QuestionCorpus c = corpus();
+        return c != null ? c.categories() : CATEGORIES;
     }
 
     public static String randomQuestion(List<String> selectedCategories) {
+        QuestionCorpus c = corpus();
+        if (c != null) {
+            return c.randomQuestion(selectedCategories);
+        }
         if (selectedCategories == null || selectedCategories.isEmpty()) {
             return QUESTIONS.get(ThreadLocalRandom.current().nextInt(QUESTIONS.size()));
         }
         int idx = ThreadLocalRandom.current().nextInt(QUESTIONS.size());
         return "[" + String.join(",", selectedCategories) + "] " + QUESTIONS.get(idx);
     }
+
+    /** 首次调用同步加载；之后文件有变化时触发后台重载。 */
+    private static QuestionCorpus corpus() {
+        if (!loaded) {
+            synchronized (QuestionBank.class) {
+                if (!loaded) {
+                    corpus = read();
+                    nextCheckNanos = System.nanoTime() + CHECK_INTERVAL_NANOS;
+                    loaded = true;
+                }
+            }
+            return corpus;
+        }
+        long now = System.nanoTime();
+        if (now - nextCheckNanos >= 0) {
+            nextCheckNanos = now + CHECK_INTERVAL_NANOS;
+            QuestionCorpus current = corpus;
+            boolean changed = current != null ? current.isStale() : Files.isRegularFile(CORPUS_FILE);
+            if (changed && RELOADING.compareAndSet(false, true)) {
+                Thread.ofPlatform().daemon().name("question-corpus-reload").start(() -> {
+                    try {
+                        QuestionCorpus next = read();
+                        // 改写后的文件读不出来时继续使用旧版本
+                        if (next != null || !Files.isRegularFile(CORPUS_FILE)) {
+                            corpus = next;
+                        }
+                    } finally {
+                        RELOADING.set(false);
+                    }
+                });
+            }
+        }
+        return corpus;
+    }
+
+    private static QuestionCorpus read() {
+        if (!Files.isRegularFile(CORPUS_FILE)) {
+            return null;
+        }
+        AppSettings settings = AppSettings.get();
+        QuestionCorpus.Sampling sampling = "category".equalsIgnoreCase(settings.questionSampling())
+                ? QuestionCorpus.Sampling.CATEGORY : QuestionCorpus.Sampling.QUESTION;
+        try {
+            return QuestionCorpus.load(CORPUS_FILE, sampling, settings.questionCategoryWeights());
+        } catch (IOException | RuntimeException e) {
+            // 文件不可读或只写了一半：在下次变化前改用内置问题
+            return null;
+        }
+    }
 }
@@ -0,0 +1,325 @@
+package com.knowledge.robot.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 只读题库：UTF-8 文本，每行 {@code 分类<TAB>问题}；空行与 {@code #} 开头的行跳过，没有 TAB 的行归入 {@link #UNTAGGED}。
+ * <p>
+ * 加载时把文件整体复制到本实例私有的堆外缓冲区，每个分类只在 {@code int[]} 中保存各问题的字节偏移，
+ * 抽到时才从缓冲区解码文本，几十万行的题库在堆上每行只占 4 字节。不直接映射原文件：映射在 Windows 上会锁住文件，
+ * 在 Linux 上原地改写会让偏移指向新内容。按分类组合抽题使用 Walker/Vose 别名表（每种组合建一次并缓存），
+ * 每次抽取 O(1)，与题库大小和分类数无关。
+ * <p>
+ * 实例不可变，可并发使用；文件不超过 2 GB。
+ */
+final class QuestionCorpus {
+    static final String UNTAGGED = "其他";
+    private static final int MAX_CACHED_SELECTIONS = 64;
+
+    /** 先按此方式给所选分类加权抽出一个分类，再在该分类内均匀抽题。 */
+    enum Sampling {
+        /** 所选范围内每道题概率相同（分类按题数加权） */
+        QUESTION,
+        /** 每个所选分类概率相同 */
+        CATEGORY
+    }
+
+    private final Path file;
+    private final FileTime modified;
+    private final long size;
+    private final ByteBuffer bytes;
+    private final List<String> categories;
+    private final int[][] offsets;
+    private final Map<String, Integer> categoryIndex;
+    private final Sampling sampling;
+    private final Map<String, Double> weights;
+    private final Map<List<String>, AliasTable> selections = new ConcurrentHashMap<>();
+    private final AliasTable all;
+
+    private QuestionCorpus(Path file, FileTime modified, long size, ByteBuffer bytes,
+                           List<String> categories, int[][] offsets, Sampling sampling, Map<String, Double> weights) {
+        this.file = file;
+        this.modified = modified;
+        this.size = size;
+        this.bytes = bytes;
+        this.categories = categories;
+        this.offsets = offsets;
+        this.sampling = sampling;
+        this.weights = weights;
+        this.categoryIndex = new HashMap<>();
+        int[] every = new int[categories.size()];
+        for (int i = 0; i < every.length; i++) {
+            categoryIndex.put(categories.get(i), i);
+            every[i] = i;
+        }
+        this.all = table(every);
+    }
+
+    /** 复制并索引 {@code file}；没有任何问题时返回 null。 */
+    static QuestionCorpus load(Path file, Sampling sampling, Map<String, Double> weights) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        ByteBuffer bytes;
+        long size;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("题库文件超过 2 GB：" + file);
+            }
+            bytes = ByteBuffer.allocateDirect((int) size);
+            while (bytes.hasRemaining() && ch.read(bytes) >= 0) {
+                // 读满为止；文件被同时截短时提前读到结尾
+            }
+            bytes.flip();
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<OffsetList> lists = new ArrayList<>();
+        int limit = bytes.limit();
+        int pos = hasBom(bytes, limit) ? 3 : 0;
+        // 题库通常按分类成段排列：分类字节与上一行相同时不再解码
+        int lastStart = -1;
+        int lastLength = 0;
+        int lastId = -1;
+        while (pos < limit) {
+            int end = pos;
+            while (end < limit && bytes.get(end) != '\n') {
+                end++;
+            }
+            int lineEnd = end > pos && bytes.get(end - 1) == '\r' ? end - 1 : end;
+            int tab = pos;
+            while (tab < lineEnd && bytes.get(tab) != '\t') {
+                tab++;
+            }
+            boolean tagged = tab < lineEnd;
+            int questionStart = tagged ? tab + 1 : pos;
+            if (lineEnd > pos && bytes.get(pos) != '#' && !isBlank(bytes, questionStart, lineEnd)) {
+                int id;
+                int tagLength = tagged ? tab - pos : -1;
+                if (tagged && tagLength == lastLength && lastStart >= 0 && sameBytes(bytes, pos, lastStart, tagLength)) {
+                    id = lastId;
+                } else {
+                    String name = tagged ? decode(bytes, pos, tab).trim() : UNTAGGED;
+                    if (name.isEmpty()) {
+                        name = UNTAGGED;
+                    }
+                    id = ids.computeIfAbsent(name, n -> {
+                        names.add(n);
+                        lists.add(new OffsetList());
+                        return names.size() - 1;
+                    });
+                }
+                lists.get(id).add(questionStart);
+                lastStart = tagged ? pos : -1;
+                lastLength = tagLength;
+                lastId = id;
+            }
+            pos = end + 1;
+        }
+        if (names.isEmpty()) {
+            return null;
+        }
+        int[][] offsets = new int[names.size()][];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = lists.get(i).toArray();
+        }
+        return new QuestionCorpus(file, modified, size, bytes, Collections.unmodifiableList(names), offsets,
+                sampling, weights);
+    }
+
+    /** 磁盘上的文件（修改时间或大小）是否已与加载时不同。 */
+    boolean isStale() {
+        try {
+            return !Files.getLastModifiedTime(file).equals(modified) || Files.size(file) != size;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    List<String> categories() {
+        return categories;
+    }
+
+    int questionCount() {
+        int n = 0;
+        for (int[] o : offsets) {
+            n += o.length;
+        }
+        return n;
+    }
+
+    /** 从所选分类中抽一道题（忽略不存在的分类名）；未选择或都不匹配时从整个题库抽取。 */
+    String randomQuestion(List<String> selected) {
+        AliasTable table = all;
+        if (selected != null && !selected.isEmpty()) {
+            table = selections.get(selected);
+            if (table == null) {
+                table = table(selected.stream()
+                        .map(categoryIndex::get)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .mapToInt(Integer::intValue)
+                        .toArray());
+                if (table == null) {
+                    table = all;
+                }
+                if (selections.size() >= MAX_CACHED_SELECTIONS) {
+                    selections.clear();
+                }
+                selections.put(List.copyOf(selected), table);
+            }
+        }
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int[] category = offsets[table.sample(rnd)];
+        return question(category[rnd.nextInt(category.length)]);
+    }
+
+    private String question(int start) {
+        int limit = bytes.limit();
+        int end = start;
+        while (end < limit && bytes.get(end) != '\n') {
+            end++;
+        }
+        if (end > start && bytes.get(end - 1) == '\r') {
+            end--;
+        }
+        return decode(bytes, start, end).trim();
+    }
+
+    private AliasTable table(int[] categoryIds) {
+        if (categoryIds.length == 0) {
+            return null;
+        }
+        double[] w = new double[categoryIds.length];
+        for (int i = 0; i < w.length; i++) {
+            int id = categoryIds[i];
+            double base = sampling == Sampling.QUESTION ? offsets[id].length : 1.0;
+            w[i] = base * weights.getOrDefault(categories.get(id), 1.0);
+        }
+        return AliasTable.of(categoryIds, w);
+    }
+
+    private static boolean hasBom(ByteBuffer b, int limit) {
+        return limit >= 3 && (b.get(0) & 0xFF) == 0xEF && (b.get(1) & 0xFF) == 0xBB && (b.get(2) & 0xFF) == 0xBF;
+    }
+
+    private static boolean isBlank(ByteBuffer b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte c = b.get(i);
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameBytes(ByteBuffer b, int a, int c, int length) {
+        for (int i = 0; i < length; i++) {
+            if (b.get(a + i) != b.get(c + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer b, int from, int to) {
+        byte[] dst = new byte[to - from];
+        b.get(from, dst);
+        return new String(dst, StandardCharsets.UTF_8);
+    }
+
+    /** 仅在建索引时使用的可增长 int 偏移列表。 */
+    private static final class OffsetList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /** Vose 别名法：对一组固定的加权结果，O(n) 构建，每次抽取 O(1)。 */
+    static final class AliasTable {
+        private final int[] outcomes;
+        private final double[] probability;
+        private final int[] alias;
+
+        private AliasTable(int[] outcomes, double[] probability, int[] alias) {
+            this.outcomes = outcomes;
+            this.probability = probability;
+            this.alias = alias;
+        }
+
+        static AliasTable of(int[] outcomes, double[] weights) {
+            int n = outcomes.length;
+            double total = 0;
+            for (double w : weights) {
+                total += Math.max(0, w);
+            }
+            double[] scaled = new double[n];
+            for (int i = 0; i < n; i++) {
+                scaled[i] = total > 0 ? Math.max(0, weights[i]) * n / total : 1.0;
+            }
+            double[] probability = new double[n];
+            int[] alias = new int[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int s = 0;
+            int l = 0;
+            for (int i = 0; i < n; i++) {
+                if (scaled[i] < 1.0) {
+                    small[s++] = i;
+                } else {
+                    large[l++] = i;
+                }
+            }
+            while (s > 0 && l > 0) {
+                int less = small[--s];
+                int more = large[--l];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1.0;
+                if (scaled[more] < 1.0) {
+                    small[s++] = more;
+                } else {
+                    large[l++] = more;
+                }
+            }
+            while (l > 0) {
+                probability[large[--l]] = 1.0;
+            }
+            while (s > 0) {
+                // 浮点舍入剩下的项
+                probability[small[--s]] = 1.0;
+            }
+            return new AliasTable(outcomes, probability, alias);
+        }
+
+        int sample(ThreadLocalRandom rnd) {
+            int i = rnd.nextInt(probability.length);
+            return outcomes[rnd.nextDouble() < probability[i] ? i : alias[i]];
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.knowledge.robot.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okio.Buffer;
+import okio.BufferedSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 流式响应解码的 JMH 对比：同一段合成的 OpenAI 风格 SSE 响应，分别用
+ * 逐行读取 + {@code readTree}（旧路径）与 {@link SseDecoder} + {@link ChatDeltaParser} 解码。
+ * {@link #main} 附带 GC 分析器，{@code gc.alloc.rate.norm} 即每次解码整段响应分配的字节数。
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     "-Dexec.args=-cp %classpath com.knowledge.robot.http.SseDecodeBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SseDecodeBenchmark {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"20000"})
+    public int events;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        body = body(events);
+        if (!linesAndTrees().equals(decoderAndParser())) {
+            throw new IllegalStateException("两种解码结果不一致");
+        }
+    }
+
+    @Benchmark
+    public String linesAndTrees() throws IOException {
+        StringBuilder out = new StringBuilder();
+        readLines(new Buffer().write(body), line -> {
+            if (line.startsWith("data:")) {
+                String data = line.substring(5).trim();
+                if ("[DONE]".equals(data)) {
+                    return false;
+                }
+                try {
+                    JsonNode node = MAPPER.readTree(data);
+                    out.append(node.path("choices").path(0).path("delta").path("content").asText());
+                } catch (IOException ignored) {
+                    // 非 JSON 的 data 与旧实现一样跳过
+                }
+            }
+            return true;
+        });
+        return out.toString();
+    }
+
+    @Benchmark
+    public String decoderAndParser() throws IOException {
+        SseDecoder decoder = new SseDecoder(new Buffer().write(body));
+        ChatDeltaParser parser = new ChatDeltaParser();
+        while (decoder.next()) {
+            if (decoder.isDoneMarker()) {
+                break;
+            }
+            if (decoder.hasData()) {
+                parser.accept(decoder.data());
+            }
+        }
+        return parser.content().toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SseDecodeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    /** 合成响应：每条事件一个 data 行，内容带序号。 */
+    private static byte[] body(int events) {
+        StringBuilder sb = new StringBuilder(events * 160);
+        for (int i = 0; i < events; i++) {
+            sb.append("data: {\"id\":\"chatcmpl-123\",\"object\":\"chat.completion.chunk\",")
+                    .append("\"choices\":[{\"index\":0,\"delta\":{\"content\":\"这是第")
+                    .append(i).append("段回答内容\"},\"finish_reason\":null}]}\n\n");
+        }
+        sb.append("data: [DONE]\n\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 旧的逐行读取：每行一个字符串，回调返回 false 时停止。 */
+    private static void readLines(BufferedSource source, Predicate<String> onLine) throws IOException {
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (!onLine.test(line)) {
+                break;
+            }
+        }
+    }
+}